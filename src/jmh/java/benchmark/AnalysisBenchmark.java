@@ -0,0 +1,116 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Пропускная способность (MB/s во вспомогательном счётчике megabytes) для каждого этапа и всего анализа.
+// Мегабайты — длина текста в UTF-8 (размер файла), а не число символов, чтобы этапы над строкой
+// и над файлом, русские и английские тексты сравнивались в одних единицах.
+// Скорость выделения памяти: -prof gc (включён в профиле benchmark по умолчанию).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class AnalysisBenchmark {
+	@Param({"ru", "en"})
+	public String language;
+
+	@Param({"1KB", "64KB", "1MB", "16MB", "512MB"})
+	public String size;
+
+	private String text;
+	private byte[] symbols;
+	private Object counts;
+	private Object analyser;
+	private Object secondAnalyser;
+	private Path file;
+	private double megabytes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		text = Corpus.generate(language, Corpus.parseSize(size), 42);
+		symbols = Stages.normalize(text);
+		counts = Stages.count(symbols);
+		analyser = Stages.analyser(counts, symbols);
+		String second = Corpus.generate(language, text.length(), 7);
+		byte[] secondSymbols = Stages.normalize(second);
+		secondAnalyser = Stages.analyser(Stages.count(secondSymbols), secondSymbols);
+		file = Files.createTempFile("entropy-benchmark", ".txt");
+		Files.writeString(file, text, StandardCharsets.UTF_8);
+		megabytes = Files.size(file) / 1e6;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+		public double megabytes;
+	}
+
+	@Benchmark
+	public byte[] normalizeText(Throughput throughput) {
+		throughput.megabytes += megabytes;
+		return Stages.normalize(text);
+	}
+
+	@Benchmark
+	public Object countSymbols(Throughput throughput) {
+		throughput.megabytes += megabytes;
+		return Stages.count(symbols);
+	}
+
+	@Benchmark
+	public Object entropies() {
+		return Stages.entropies(counts);
+	}
+
+	@Benchmark
+	public Map<?, ?> letterMap() {
+		return Stages.letterMap(analyser);
+	}
+
+	@Benchmark
+	public Map<?, ?> bigramMap() {
+		return Stages.bigramMap(analyser);
+	}
+
+	@Benchmark
+	public Object pairedEntropies(Throughput throughput) {
+		throughput.megabytes += megabytes;
+		return Stages.paired(analyser, secondAnalyser);
+	}
+
+	@Benchmark
+	public Object analyseText(Throughput throughput) {
+		throughput.megabytes += megabytes;
+		return Stages.analyse(text);
+	}
+
+	@Benchmark
+	public Object analyseFile(Throughput throughput) {
+		throughput.megabytes += megabytes;
+		return Stages.analyse(file);
+	}
+}
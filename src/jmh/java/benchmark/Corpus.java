@@ -0,0 +1,46 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+
+// Синтетический текст с частотами букв, близкими к естественным, пробелами, знаками и заглавными буквами
+final class Corpus {
+	private static final String RUSSIAN = "оооооооооооееееееееаааааааааииииииииннннннннтттттттсссссссррррррввввввллллллкккккммммдддддппппуууяяяыыььгггззббчйххжшююцщээфъ";
+	private static final String ENGLISH = "eeeeeeeeeeeetttttttttaaaaaaaaoooooooiiiiiiinnnnnnnsssssshhhhhhrrrrrrddddllllcccuuummmwwwffggyyppbbvkjxqz";
+	private static final String PUNCTUATION = ",,,,..!?;:-";
+
+	private Corpus() {
+	}
+
+	static String generate(String language, int length, long seed) {
+		String letters = language.equals("ru") ? RUSSIAN : ENGLISH;
+		SplittableRandom random = new SplittableRandom(seed);
+		StringBuilder text = new StringBuilder(length);
+		boolean sentenceStart = true;
+		while (text.length() < length) {
+			int word = 1 + random.nextInt(9);
+			for (int i = 0; i < word && text.length() < length; i++) {
+				char c = letters.charAt(random.nextInt(letters.length()));
+				text.append(sentenceStart && i == 0 ? Character.toUpperCase(c) : c);
+			}
+			sentenceStart = false;
+			if (random.nextInt(8) == 0) {
+				char mark = PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length()));
+				text.append(mark);
+				sentenceStart = mark == '.' || mark == '!' || mark == '?';
+			}
+			text.append(random.nextInt(12) == 0 ? '\n' : ' ');
+		}
+		text.setLength(length);
+		return text.toString();
+	}
+
+	static int parseSize(String size) {
+		if (size.endsWith("KB")) {
+			return Integer.parseInt(size.substring(0, size.length() - 2)) << 10;
+		}
+		if (size.endsWith("MB")) {
+			return Integer.parseInt(size.substring(0, size.length() - 2)) << 20;
+		}
+		return Integer.parseInt(size);
+	}
+}
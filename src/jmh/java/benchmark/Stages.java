@@ -0,0 +1,129 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Классы приложения лежат в безымянном пакете, а JMH требует именованный, поэтому этапы
+// вызываются через публичные методы StageHooks и static final MethodHandle: JIT сворачивает
+// их до прямых вызовов. Имена и сигнатуры те же, что проверяет StageHooksTest.
+final class Stages {
+	private static final MethodHandle NORMALIZE;
+	private static final MethodHandle COUNT;
+	private static final MethodHandle ANALYSER;
+	private static final MethodHandle ANALYSE_TEXT;
+	private static final MethodHandle ANALYSE_FILE;
+	private static final MethodHandle LETTER_MAP;
+	private static final MethodHandle BIGRAM_MAP;
+	private static final MethodHandle PAIRED;
+
+	static {
+		try {
+			Class<?> hooks = Class.forName("StageHooks");
+			Class<?> analyser = Class.forName("TextAnalyser");
+			Class<?> paired = Class.forName("PairedTextAnalyser");
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			NORMALIZE = lookup.findStatic(hooks, "normalize", MethodType.methodType(byte[].class, String.class));
+			COUNT = lookup.findStatic(hooks, "count", MethodType.methodType(Object.class, byte[].class));
+			ANALYSER = lookup.findStatic(hooks, "analyser",
+					MethodType.methodType(analyser, Object.class, byte[].class))
+					.asType(MethodType.methodType(Object.class, Object.class, byte[].class));
+			ANALYSE_TEXT = lookup.findStatic(hooks, "analyse", MethodType.methodType(analyser, String.class))
+					.asType(MethodType.methodType(Object.class, String.class));
+			ANALYSE_FILE = lookup.findStatic(hooks, "analyse", MethodType.methodType(analyser, Path.class))
+					.asType(MethodType.methodType(Object.class, Path.class));
+			LETTER_MAP = lookup.findStatic(hooks, "letterMap", MethodType.methodType(Map.class, analyser))
+					.asType(MethodType.methodType(Map.class, Object.class));
+			BIGRAM_MAP = lookup.findStatic(hooks, "bigramMap", MethodType.methodType(Map.class, analyser))
+					.asType(MethodType.methodType(Map.class, Object.class));
+			PAIRED = lookup.findStatic(hooks, "paired", MethodType.methodType(paired, analyser, analyser))
+					.asType(MethodType.methodType(Object.class, Object.class, Object.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private Stages() {
+	}
+
+	static byte[] normalize(String text) {
+		try {
+			return (byte[]) NORMALIZE.invokeExact(text);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Object count(byte[] symbols) {
+		try {
+			return (Object) COUNT.invokeExact(symbols);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	// Замыкает биграммы и считает обе энтропии по готовым счётчикам
+	static Object entropies(Object counts) {
+		return analyser(counts, null);
+	}
+
+	static Object analyser(Object counts, byte[] symbols) {
+		try {
+			return (Object) ANALYSER.invokeExact(counts, symbols);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Object analyse(String text) {
+		try {
+			return (Object) ANALYSE_TEXT.invokeExact(text);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Object analyse(Path file) {
+		try {
+			return (Object) ANALYSE_FILE.invokeExact(file);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Map<?, ?> letterMap(Object analyser) {
+		try {
+			return (Map<?, ?>) LETTER_MAP.invokeExact(analyser);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Map<?, ?> bigramMap(Object analyser) {
+		try {
+			return (Map<?, ?>) BIGRAM_MAP.invokeExact(analyser);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static Object paired(Object first, Object second) {
+		try {
+			return (Object) PAIRED.invokeExact(first, second);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return new IllegalStateException(e);
+	}
+}
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+// Набор символов анализа и таблица нормализации: для каждого char из BMP заранее
+// вычислен индекс его строчной формы в алфавите или -1, если символ пропускается
+public final class Alphabet {
+	public static final Alphabet DEFAULT = new Alphabet(TextAnalyser.alphabets);
+	// Индексы хранятся в byte
+	static final int MAX_SIZE = Byte.MAX_VALUE;
+
+	private final String symbols;
+	private final byte[] table = new byte[Character.MAX_VALUE + 1];
+
+	public Alphabet(String symbols) {
+		if (symbols.isEmpty() || symbols.length() > MAX_SIZE) {
+			throw new IllegalArgumentException("Alphabet must have 1.." + MAX_SIZE + " symbols: " + symbols.length());
+		}
+		this.symbols = symbols;
+		int[] index = new int[Character.MAX_VALUE + 1];
+		Arrays.fill(index, -1);
+		for (int i = 0; i < symbols.length(); i++) {
+			char c = symbols.charAt(i);
+			if (index[c] >= 0) {
+				throw new IllegalArgumentException("Duplicate symbol: " + c);
+			}
+			index[c] = i;
+		}
+		// Та же свёртка регистра, что у String.toLowerCase(); символы, чья строчная форма
+		// длиннее одного char, в алфавит не попадают
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			String lower = Character.toString((char) c).toLowerCase();
+			table[c] = (byte) (lower.length() == 1 ? index[lower.charAt(0)] : -1);
+		}
+	}
+
+	// Алфавит с дополнительными символами, например DEFAULT.with("ё"); индексы прежних символов не меняются
+	public Alphabet with(String extra) {
+		return new Alphabet(symbols + extra);
+	}
+
+	public int size() {
+		return symbols.length();
+	}
+
+	public String symbols() {
+		return symbols;
+	}
+
+	char symbol(int index) {
+		return symbols.charAt(index);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Alphabet && ((Alphabet) o).symbols.equals(symbols);
+	}
+
+	@Override
+	public int hashCode() {
+		return symbols.hashCode();
+	}
+
+	// Индекс самого символа без свёртки регистра
+	int indexOf(char c) {
+		return symbols.indexOf(c);
+	}
+
+	int normalize(char c) {
+		return table[c];
+	}
+
+	// Записывает индексы символов text[from, to) в symbols начиная с offset и возвращает их число
+	int normalize(String text, int from, int to, byte[] symbols, int offset) {
+		byte[] table = this.table;
+		int count = offset;
+		for (int i = from; i < to; i++) {
+			byte symbol = table[text.charAt(i)];
+			if (symbol >= 0) {
+				symbols[count++] = symbol;
+			}
+		}
+		return count - offset;
+	}
+
+	int normalize(char[] chars, int from, int to, byte[] symbols, int offset) {
+		byte[] table = this.table;
+		int count = offset;
+		for (int i = from; i < to; i++) {
+			byte symbol = table[chars[i]];
+			if (symbol >= 0) {
+				symbols[count++] = symbol;
+			}
+		}
+		return count - offset;
+	}
+}
@@ -0,0 +1,110 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Выполняет анализ вне EDT. Все методы, кроме самих задач, вызываются из EDT.
+final class AnalysisPipeline {
+	private static final Logger log = LoggerFactory.getLogger(AnalysisPipeline.class);
+	private final ThreadPoolExecutor executor;
+	private final Map<Object, Ticket> current = new HashMap<>();
+
+	AnalysisPipeline(int threads, int queueSize) {
+		AtomicInteger counter = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), runnable -> {
+					Thread thread = new Thread(runnable, "analysis-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	// Новая задача для той же цели отменяет предыдущую; результаты устаревших задач отбрасываются
+	<T> void submit(Object target, Job<T> job, Listener<T> listener) {
+		cancel(target);
+		Ticket ticket = new Ticket();
+		ticket.progress = new Progress((done, total) -> {
+			int percent = total > 0 ? (int) Math.min(100, done * 100 / total) : 0;
+			if (ticket.percent.getAndSet(percent) != percent) {
+				SwingUtilities.invokeLater(() -> {
+					if (current.get(target) == ticket) {
+						listener.progress(percent);
+					}
+				});
+			}
+		});
+		current.put(target, ticket);
+		try {
+			ticket.future = executor.submit(() -> {
+				try {
+					T result = job.run(ticket.progress);
+					SwingUtilities.invokeLater(() -> {
+						if (current.remove(target, ticket)) {
+							listener.done(result);
+						}
+					});
+				} catch (Exception e) {
+					if (ticket.progress.isCancelled()) return;
+					log.error("Ошибка анализа", e);
+					SwingUtilities.invokeLater(() -> {
+						if (current.remove(target, ticket)) {
+							listener.failed(e);
+						}
+					});
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			current.remove(target, ticket);
+			listener.failed(e);
+		}
+	}
+
+	void cancel(Object target) {
+		Ticket ticket = current.remove(target);
+		if (ticket != null) {
+			ticket.cancel();
+		}
+	}
+
+	void cancelAll() {
+		for (Ticket ticket : current.values()) {
+			ticket.cancel();
+		}
+		current.clear();
+	}
+
+	interface Job<T> {
+		T run(Progress progress) throws Exception;
+	}
+
+	interface Listener<T> {
+		default void progress(int percent) {
+		}
+
+		void done(T result);
+
+		void failed(Exception e);
+	}
+
+	private static final class Ticket {
+		final AtomicInteger percent = new AtomicInteger(-1);
+		volatile Progress progress;
+		volatile Future<?> future;
+
+		void cancel() {
+			progress.cancel();
+			if (future != null) {
+				future.cancel(true);
+			}
+		}
+	}
+}
@@ -0,0 +1,342 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HTTP-сервис анализа на localhost без графического интерфейса.
+//   POST /analyse        тело — текст в UTF-8
+//   GET  /analyse?path=  файл внутри корневого каталога, сжатый или в любой из кодировок TextEncoding
+//   POST /pair           form-urlencoded: first, second (тексты) или firstPath, secondPath
+//   GET  /health, /metrics
+// Тела запросов читают несколько потоков ввода-вывода, вычисления идут в ограниченном пуле;
+// если его очередь заполнена, сразу возвращается 503, чтобы задержка не росла без предела.
+// --max-bytes ограничивает тело запроса, размер файла и распакованный текст сжатого файла (413).
+public class AnalysisServer implements AutoCloseable {
+	private static final String USAGE = "Usage: Main --serve [--port <n>] [--workers <n>] [--queue <n>]"
+			+ " [--max-bytes <n>] [--root <dir>] [--cache-bytes <n>]";
+	private static final int IO_THREADS = 4;
+
+	private final HttpServer server;
+	private final ExecutorService io;
+	private final ThreadPoolExecutor workers;
+	private final LruCache<String, byte[]> results;
+	private final long maxBytes;
+	private final Path root;
+
+	public AnalysisServer(int port, int workers, int queue, long maxBytes, Path root, long cacheBytes)
+			throws IOException {
+		this.maxBytes = maxBytes;
+		// Настоящий путь, чтобы проверка вложенности в resolve() сравнивала пути без символических ссылок
+		this.root = root.toRealPath();
+		this.results = new LruCache<>(cacheBytes, response -> response.length);
+		this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queue), threads("http-worker-"));
+		this.io = Executors.newFixedThreadPool(IO_THREADS, threads("http-io-"));
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+		server.setExecutor(io);
+		server.createContext("/analyse", this::analyse);
+		server.createContext("/pair", this::pair);
+		server.createContext("/health", exchange -> respond(exchange, 200, "{\"status\":\"ok\"}"));
+		server.createContext("/metrics", this::metrics);
+	}
+
+	public static int execute(String[] args) {
+		int port = 8080;
+		int workers = Runtime.getRuntime().availableProcessors();
+		int queue = 64;
+		long maxBytes = 16L << 20;
+		long cacheBytes = 64L << 20;
+		Path root = Paths.get("").toAbsolutePath();
+		try {
+			for (int i = 1; i < args.length; i++) {
+				switch (args[i]) {
+					case "--port": port = Integer.parseInt(args[++i]); break;
+					case "--workers": workers = Integer.parseInt(args[++i]); break;
+					case "--queue": queue = Integer.parseInt(args[++i]); break;
+					case "--max-bytes": maxBytes = Long.parseLong(args[++i]); break;
+					case "--cache-bytes": cacheBytes = Long.parseLong(args[++i]); break;
+					case "--root": root = Paths.get(args[++i]); break;
+					default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+			if (workers < 1 || queue < 1 || maxBytes < 1) {
+				throw new IllegalArgumentException("--workers, --queue and --max-bytes must be positive");
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return 2;
+		}
+		try {
+			AnalysisServer server = new AnalysisServer(port, workers, queue, maxBytes, root, cacheBytes);
+			server.start();
+			System.err.printf("Listening on http://127.0.0.1:%d (root %s)%n", server.port(), server.root);
+			return 0;
+		} catch (IOException e) {
+			System.err.println("Server failed: " + e);
+			return 1;
+		}
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		io.shutdownNow();
+		workers.shutdownNow();
+	}
+
+	private void analyse(HttpExchange exchange) throws IOException {
+		Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+		String path = query.get("path");
+		if (path != null) {
+			Path file = resolve(exchange, path);
+			if (file == null) return;
+			compute(exchange, () -> {
+				String hash = ContentHash.of(file);
+				return results.get("analyse:" + hash, () -> textResult(hash, TextEncoding.analyseFile(file, false, maxBytes)));
+			});
+		} else if (exchange.getRequestMethod().equals("POST")) {
+			byte[] body = readBody(exchange);
+			if (body == null) return;
+			compute(exchange, () -> {
+				String text = new String(body, StandardCharsets.UTF_8);
+				String hash = ContentHash.of(text);
+				return results.get("analyse:" + hash, () -> textResult(hash, new TextAnalyser(text)));
+			});
+		} else {
+			respond(exchange, 400, error("POST a text body or pass ?path="));
+		}
+	}
+
+	private void pair(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			respond(exchange, 405, error("Use POST with form-encoded first/second or firstPath/secondPath"));
+			return;
+		}
+		byte[] body = readBody(exchange);
+		if (body == null) return;
+		Map<String, String> form = parseForm(new String(body, StandardCharsets.US_ASCII));
+		Path firstFile = null;
+		Path secondFile = null;
+		if (form.containsKey("firstPath") && form.containsKey("secondPath")) {
+			firstFile = resolve(exchange, form.get("firstPath"));
+			if (firstFile == null) return;
+			secondFile = resolve(exchange, form.get("secondPath"));
+			if (secondFile == null) return;
+		} else if (!form.containsKey("first") || !form.containsKey("second")) {
+			respond(exchange, 400, error("Expected first and second, or firstPath and secondPath"));
+			return;
+		}
+		Path first = firstFile;
+		Path second = secondFile;
+		compute(exchange, () -> {
+			String firstHash = first != null ? ContentHash.of(first) : ContentHash.of(form.get("first"));
+			String secondHash = second != null ? ContentHash.of(second) : ContentHash.of(form.get("second"));
+			return results.get("pair:" + firstHash + ":" + secondHash, () -> {
+				TextAnalyser a = first != null ? TextEncoding.analyseFile(first, true, maxBytes) : new TextAnalyser(form.get("first"));
+				TextAnalyser b = second != null ? TextEncoding.analyseFile(second, true, maxBytes) : new TextAnalyser(form.get("second"));
+				PairedTextAnalyser pairedAB = new PairedTextAnalyser(a, b);
+				PairedTextAnalyser pairedBA = pairedAB.reversed();
+				StringBuilder json = new StringBuilder("{");
+				Json.field(json, "first_hash", firstHash);
+				Json.field(json, "second_hash", secondHash);
+				Json.field(json, "conditional_entropy_ab", pairedAB.getConditionalEntropy());
+				Json.field(json, "conditional_entropy_ba", pairedBA.getConditionalEntropy());
+				Json.field(json, "joint_entropy", pairedAB.getJointEntropy());
+				return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+			});
+		});
+	}
+
+	private void metrics(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream dump = new ByteArrayOutputStream();
+		if (Metrics.isEnabled()) {
+			try (PrintStream out = new PrintStream(dump, true, StandardCharsets.UTF_8)) {
+				Metrics.dump(out);
+			}
+		} else {
+			dump.write("metrics are disabled, start with -Dentropy.metrics=true\n".getBytes(StandardCharsets.UTF_8));
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		send(exchange, 200, dump.toByteArray());
+	}
+
+	private static byte[] textResult(String hash, TextAnalyser analyser) {
+		StringBuilder json = new StringBuilder("{");
+		Json.field(json, "hash", hash);
+		Json.field(json, "length", analyser.getLength());
+		Json.field(json, "default_entropy", analyser.getDefaultEntropy());
+		Json.field(json, "markov_entropy", analyser.getMarkovEntropy());
+		return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// Ответ пишет поток из пула вычислений; при переполненной очереди — сразу 503
+	@SuppressWarnings("try")
+	private void compute(HttpExchange exchange, Job job) throws IOException {
+		Metrics.increment("http.requests", 1);
+		try {
+			workers.execute(() -> {
+				try (Stage stage = Stage.start("http." + exchange.getHttpContext().getPath().substring(1), 0)) {
+					send(exchange, 200, job.run());
+				} catch (IOException | RuntimeException e) {
+					try {
+						respond(exchange, status(e), error(String.valueOf(e)));
+					} catch (IOException ignored) {
+						exchange.close();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			Metrics.increment("http.rejected", 1);
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, 503, error("Server is busy"));
+		}
+	}
+
+	private static int status(Exception e) {
+		if (e instanceof NoSuchFileException) {
+			return 404;
+		}
+		// Сжатый файл прошёл проверку размера в resolve(), но распаковался в слишком большой текст
+		if (e instanceof CompressedText.TooLargeException) {
+			return 413;
+		}
+		return 422;
+	}
+
+	// Путь принимается только внутри корневого каталога
+	private Path resolve(HttpExchange exchange, String path) throws IOException {
+		Path file = root.resolve(path).normalize();
+		if (!file.startsWith(root)) {
+			respond(exchange, 403, error("Path is outside of " + root));
+			return null;
+		}
+		// Символическая ссылка внутри корня может указывать наружу
+		try {
+			file = file.toRealPath();
+		} catch (NoSuchFileException e) {
+			respond(exchange, 404, error("No such file: " + path));
+			return null;
+		}
+		if (!file.startsWith(root)) {
+			respond(exchange, 403, error("Path is outside of " + root));
+			return null;
+		}
+		if (!Files.isRegularFile(file)) {
+			respond(exchange, 404, error("No such file: " + path));
+			return null;
+		}
+		if (Files.size(file) > maxBytes) {
+			respond(exchange, 413, error("File is larger than " + maxBytes + " bytes"));
+			return null;
+		}
+		return file;
+	}
+
+	// Возвращает null, если ответ об ошибке уже отправлен
+	private byte[] readBody(HttpExchange exchange) throws IOException {
+		String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (declared != null) {
+			long length;
+			try {
+				length = Long.parseLong(declared.trim());
+			} catch (NumberFormatException e) {
+				length = -1;
+			}
+			if (length < 0) {
+				respond(exchange, 400, error("Invalid Content-Length: " + declared));
+				return null;
+			}
+			if (length > maxBytes) {
+				respond(exchange, 413, error("Request body is larger than " + maxBytes + " bytes"));
+				return null;
+			}
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try (InputStream in = exchange.getRequestBody()) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+				if (body.size() > maxBytes) {
+					respond(exchange, 413, error("Request body is larger than " + maxBytes + " bytes"));
+					return null;
+				}
+			}
+		}
+		return body.toByteArray();
+	}
+
+	private static Map<String, String> parseForm(String encoded) {
+		Map<String, String> form = new HashMap<>();
+		if (encoded == null || encoded.isEmpty()) {
+			return form;
+		}
+		for (String pair : encoded.split("&")) {
+			int separator = pair.indexOf('=');
+			String name = separator < 0 ? pair : pair.substring(0, separator);
+			String value = separator < 0 ? "" : pair.substring(separator + 1);
+			form.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return form;
+	}
+
+	private static String error(String message) {
+		StringBuilder json = new StringBuilder("{");
+		Json.field(json, "error", message);
+		return json.append('}').toString();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		send(exchange, status, json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		}
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static ThreadFactory threads(String prefix) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> new Thread(runnable, prefix + counter.incrementAndGet());
+	}
+
+	private interface Job {
+		byte[] run() throws IOException;
+	}
+}
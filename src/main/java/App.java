@@ -11,25 +11,46 @@ import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
+import java.text.DecimalFormat;
 import java.awt.event.ActionListener;
+import java.util.function.Function;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
 
 public class App {
 	private static final Logger log = LoggerFactory.getLogger(App.class);
-	private final String[] loadedTexts;
+	private static final long PARALLEL_THRESHOLD = 8L << 20;
+	private static final long ANALYSIS_CACHE_BYTES = 512L << 20;
+	private static final int PAIR_CACHE_SIZE = 16;
+	private final ParallelAnalyser parallelAnalyser =
+			new ParallelAnalyser(Runtime.getRuntime().availableProcessors(), PARALLEL_THRESHOLD);
+	private final LruCache<String, TextAnalyser> analyses = new LruCache<>(ANALYSIS_CACHE_BYTES, App::cacheWeight);
+	private final LruCache<String, PairedTextAnalyser> pairs = new LruCache<>(PAIR_CACHE_SIZE, pair -> 1);
+	private final LruCache<String, EntropyBootstrap> intervals = new LruCache<>(PAIR_CACHE_SIZE, interval -> 1);
+	private final AnalysisPipeline pipeline = new AnalysisPipeline(2, 64);
+	private final AnalysisPipeline loading = new AnalysisPipeline(1, 12);
+	private final Path[] loadedTexts;
+	private final String[] textHashes;
 	private final int width, height;
 	private JFrame frame;
-	private int currentTableIndex = 0;
+	private LazyCards analysisCards;
+	private LazyCards diagramCards;
+	private JPanel analysisPanel;
+	private JPanel diagramPanel;
+	private final JLabel[] corpusLabels = new JLabel[2];
+	private boolean equalWeights;
 
 	public App(int width, int height) {
 		this.width = width;
 		this.height = height;
+		// Панель текстов при построении сразу читает загруженные тексты для строки корпуса
+		this.loadedTexts = new Path[12];
+		this.textHashes = new String[12];
 		this.frame = mainFrame();
-		this.loadedTexts = new String[12];
 	}
 
 	private JFrame mainFrame() {
@@ -50,8 +71,9 @@ public class App {
 
 	public JMenuBar menuBar() {
 		JMenuBar menuBar = new JMenuBar();
-		String[] buttons = {"Тексты", "Диаграммы", "Анализ одного текста", "Анализ двух текстов"};
-		String[] actions = {"text", "diagram", "analysis1", "analysis2"};
+		String[] buttons = {"Тексты", "Диаграммы", "Анализ одного текста", "Анализ двух текстов",
+				"Матрица энтропий"};
+		String[] actions = {"text", "diagram", "analysis1", "analysis2", "matrix"};
 
 		for (int i = 0; i < buttons.length; i++) {
 			JButton button = new JButton(buttons[i]);
@@ -63,35 +85,47 @@ public class App {
 	}
 
 	public void showPanel(String panelType) {
+		pipeline.cancelAll();
+		if (analysisCards != null) analysisCards.abandonPending();
+		if (diagramCards != null) diagramCards.abandonPending();
 		frame.getContentPane().removeAll();
 
 		switch(panelType) {
 			case "text": frame.add(createTextsPanel()); break;
-			case "diagram": frame.add(createDiagramPanel()); break;
-			case "analysis1": frame.add(createAnalysisPanel1()); break;
+			case "diagram":
+				if (diagramPanel == null) diagramPanel = createDiagramPanel();
+				diagramCards.show(diagramCards.current());
+				frame.add(diagramPanel);
+				break;
+			case "analysis1":
+				if (analysisPanel == null) analysisPanel = createAnalysisPanel1();
+				analysisCards.show(analysisCards.current());
+				frame.add(analysisPanel);
+				break;
 			case "analysis2": frame.add(createAnalysisPanel2()); break;
+			case "matrix": frame.add(createMatrixPanel()); break;
 		}
 		frame.revalidate();
 		frame.repaint();
 	}
 
+	// Карточки строятся при первом показе и сохраняются между переключениями экранов
 	private JPanel createAnalysisPanel1() {
 		JPanel mainPanel = new JPanel(new BorderLayout());
-		JPanel cardsPanel = new JPanel(new CardLayout());
-
-		for (int i = 0; i < 12; i++) {
-			JPanel cardPanel;
+		analysisCards = new LazyCards(12, (i, holder, ready) -> {
 			if(loadedTexts[i] != null) {
-				TextAnalyser textAnalyser = new TextAnalyser(loadedTexts[i]);
-				cardPanel = createCardPanelWithTabs(textAnalyser);
+				Path file = loadedTexts[i];
+				String hash = textHashes[i];
+				pipeline.submit("analysis1:" + i, progress -> cachedAnalyser(file, hash, false, progress),
+						fillWhenReady(holder, this::createCardPanelWithTabs, ready));
 			} else {
-				cardPanel = createEmptyCardPanel();
+				showInHolder(holder, createEmptyCardPanel());
+				ready.run();
 			}
-			cardsPanel.add(cardPanel, "panel_" + i);
-		}
+		});
 
-		mainPanel.add(createNavigationPanel(cardsPanel), BorderLayout.NORTH);
-		mainPanel.add(cardsPanel, BorderLayout.CENTER);
+		mainPanel.add(createNavigationPanel(analysisCards), BorderLayout.NORTH);
+		mainPanel.add(analysisCards.panel(), BorderLayout.CENTER);
 		return mainPanel;
 	}
 
@@ -102,21 +136,19 @@ public class App {
 		JTabbedPane tabbedPane = new JTabbedPane();
 
 		// Вкладка 1: Частоты биграмм
-		JTable freqTable = createCombinedTable(analyser.getBigram(), analyser.getAlphabet(),
-				analyser.getNormalized().length(), "freq");
+		JTable freqTable = createBigramTable(analyser, false);
 		tabbedPane.addTab("Частоты биграмм", new JScrollPane(freqTable));
 
 		// Вкладка 2: Условные вероятности
-		JTable condTable = createCombinedTable(analyser.getBigram(), analyser.getAlphabet(),
-				analyser.getNormalized().length(), "conditional");
+		JTable condTable = createBigramTable(analyser, true);
 		tabbedPane.addTab("Условные вероятности", new JScrollPane(condTable));
 
 		// Вкладка 3: Частоты символов
-		JTable charTable = createCharFrequencyTable(analyser.getAlphabet(), analyser.getNormalized().length());
+		JTable charTable = createCharFrequencyTable(analyser);
 		tabbedPane.addTab("Частоты символов", new JScrollPane(charTable));
 
 		// Текст с результатами
-		JTextArea text = createResultText(analyser.getNormalized().length(),
+		JTextArea text = createResultText(analyser.getLength(),
 				analyser.getDefaultEntropy(), analyser.getMarkovEntropy());
 
 		panel.add(tabbedPane, BorderLayout.CENTER);
@@ -124,23 +156,23 @@ public class App {
 		return panel;
 	}
 
-	private JTable createCharFrequencyTable(Map<Character, Integer> alphabet, int length) {
-		if (alphabet == null || alphabet.isEmpty()) {
+	private JTable createCharFrequencyTable(TextAnalyser analyser) {
+		Map<Character, Integer> alphabet = analyser.getAlphabet();
+		long length = analyser.getLength();
+		if (length == 0) {
 			return new JTable(new Object[][]{{"Нет данных"}}, new String[]{"Нет данных"});
 		}
 
 		List<Character> chars = new ArrayList<>(new TreeSet<>(alphabet.keySet()));
-		Object[][] data = new Object[chars.size()][2];
-		String[] columns = {"Символ", "Частота %"};
-
+		String[] rows = new String[chars.size()];
+		long[] counts = new long[chars.size()];
 		for (int i = 0; i < chars.size(); i++) {
-			Character ch = chars.get(i);
-			double freq = (double) alphabet.get(ch) / length * 100;
-			data[i][0] = ch;
-			data[i][1] = String.format("%.3f", freq);
+			rows[i] = String.valueOf(chars.get(i));
+			counts[i] = alphabet.get(chars.get(i));
 		}
 
-		return createStyledTable(data, columns, "char");
+		return createStyledTable(new HeatTableModel("Символ", rows, new String[]{"Частота %"}, 12.0,
+				(row, column) -> (double) counts[row] / length * 100));
 	}
 
 	private JPanel createAnalysisPanel2() {
@@ -174,14 +206,14 @@ public class App {
 		return panel;
 	}
 
-	private JPanel createNavigationPanel(JPanel cardsPanel) {
+	private JPanel createNavigationPanel(LazyCards cards) {
 		JPanel controls = new JPanel();
 		JButton prev = new JButton("← Пред");
 		JButton next = new JButton("След →");
-		JLabel titleLabel = new JLabel("Анализ 1");
+		JLabel titleLabel = new JLabel("Анализ " + (cards.current() + 1));
 
-		prev.addActionListener(e -> navigate(-1, cardsPanel, titleLabel));
-		next.addActionListener(e -> navigate(1, cardsPanel, titleLabel));
+		prev.addActionListener(e -> navigate(-1, cards, titleLabel));
+		next.addActionListener(e -> navigate(1, cards, titleLabel));
 
 		controls.add(prev);
 		controls.add(titleLabel);
@@ -189,11 +221,9 @@ public class App {
 		return controls;
 	}
 
-	private void navigate(int direction, JPanel cardsPanel, JLabel titleLabel) {
-		currentTableIndex = (currentTableIndex + direction + 12) % 12;
-		CardLayout cl = (CardLayout) cardsPanel.getLayout();
-		cl.show(cardsPanel, "panel_" + currentTableIndex);
-		titleLabel.setText("Анализ " + (currentTableIndex + 1));
+	private void navigate(int direction, LazyCards cards, JLabel titleLabel) {
+		cards.move(direction);
+		titleLabel.setText("Анализ " + (cards.current() + 1));
 	}
 
 	private void setupComboBoxes(JComboBox<String> first, JComboBox<String> second) {
@@ -222,16 +252,31 @@ public class App {
 
 			comparisonPanel.removeAll();
 			entropyArea.removeAll();
+			pipeline.cancel("interval:A");
+			pipeline.cancel("interval:B");
 
 			if(loadedTexts[firstIndex] != null && loadedTexts[secondIndex] != null) {
-				PairedTextAnalyser pairedAB = new PairedTextAnalyser(loadedTexts[firstIndex], loadedTexts[secondIndex]);
-				PairedTextAnalyser pairedBA = new PairedTextAnalyser(loadedTexts[secondIndex], loadedTexts[firstIndex]);
-				TextAnalyser soloA = new TextAnalyser(loadedTexts[firstIndex]);
-				TextAnalyser soloB = new TextAnalyser(loadedTexts[secondIndex]);
-
-				setupComparisonEntropies(comparisonPanel, pairedAB, pairedBA, soloA, soloB);
-				setupIndividualEntropies(entropyArea, soloA, soloB);
+				Path firstFile = loadedTexts[firstIndex];
+				Path secondFile = loadedTexts[secondIndex];
+				String firstHash = textHashes[firstIndex];
+				String secondHash = textHashes[secondIndex];
+				pipeline.submit("analysis2", progress -> {
+							TextAnalyser soloA = cachedAnalyser(firstFile, firstHash, true, progress);
+							TextAnalyser soloB = cachedAnalyser(secondFile, secondHash, true, progress);
+							return new Comparison(soloA, soloB,
+									cachedPair(firstHash, secondHash, soloA, soloB), cachedPair(secondHash, firstHash, soloB, soloA),
+									firstHash, secondHash);
+						},
+						fillWhenReady(comparisonPanel, comparison -> {
+							JPanel result = new JPanel();
+							setupComparisonEntropies(result, comparison.pairedAB, comparison.pairedBA,
+									comparison.soloA, comparison.soloB);
+							setupIndividualEntropies(entropyArea, comparison);
+							entropyArea.revalidate();
+							return result;
+						}));
 			} else {
+				pipeline.cancel("analysis2");
 				showErrorMessage(comparisonPanel, entropyArea);
 			}
 
@@ -244,6 +289,51 @@ public class App {
 		}
 	}
 
+	// Все загруженные тексты сравниваются попарно за один проход
+	private JPanel createMatrixPanel() {
+		List<Path> files = new ArrayList<>();
+		List<String> hashes = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			if (loadedTexts[i] != null) {
+				files.add(loadedTexts[i]);
+				hashes.add(textHashes[i]);
+				names.add("Текст " + (i + 1));
+			}
+		}
+		if (files.size() < 2) {
+			return createEmptyCardPanel();
+		}
+
+		JPanel matrixPanel = new JPanel(new BorderLayout());
+		pipeline.submit("matrix", progress -> {
+					List<TextAnalyser> texts = new ArrayList<>();
+					for (int i = 0; i < files.size(); i++) {
+						texts.add(cachedAnalyser(files.get(i), hashes.get(i), true, progress));
+					}
+					return new EntropyMatrix(texts, Runtime.getRuntime().availableProcessors(), progress);
+				},
+				fillWhenReady(matrixPanel, matrix -> {
+					JTabbedPane tabbedPane = new JTabbedPane();
+					tabbedPane.addTab("H(строка|столбец)",
+							new JScrollPane(createMatrixTable(names, matrix::getConditionalEntropy)));
+					tabbedPane.addTab("H(строка,столбец)",
+							new JScrollPane(createMatrixTable(names, matrix::getJointEntropy)));
+					return tabbedPane;
+				}));
+		return matrixPanel;
+	}
+
+	private JTable createMatrixTable(List<String> names, HeatTableModel.Cell entropy) {
+		String[] labels = names.toArray(new String[0]);
+		// Энтропии в битах на символ
+		JTable table = createStyledTable(new HeatTableModel("", labels, labels, 12.0, entropy));
+		for (int i = 0; i < table.getColumnCount(); i++) {
+			table.getColumnModel().getColumn(i).setPreferredWidth(70);
+		}
+		return table;
+	}
+
 	private void setupComparisonEntropies(JPanel comparisonPanel, PairedTextAnalyser pairedAB,
 										  PairedTextAnalyser pairedBA, TextAnalyser soloA, TextAnalyser soloB) {
 		comparisonPanel.setLayout(new BorderLayout());
@@ -265,14 +355,14 @@ public class App {
 		comparisonPanel.add(entropyCards, BorderLayout.CENTER);
 	}
 
-	private void setupIndividualEntropies(JPanel entropyArea, TextAnalyser soloA, TextAnalyser soloB) {
+	private void setupIndividualEntropies(JPanel entropyArea, Comparison comparison) {
 		entropyArea.setLayout(new BorderLayout());
 
 		JPanel individualPanel = new JPanel(new GridLayout(1, 2, 10, 0));
 		individualPanel.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
 
-		individualPanel.add(createTextPanel(soloA, "Текст A"));
-		individualPanel.add(createTextPanel(soloB, "Текст B"));
+		individualPanel.add(createTextPanel(comparison.soloA, comparison.hashA, "interval:A", "Текст A"));
+		individualPanel.add(createTextPanel(comparison.soloB, comparison.hashB, "interval:B", "Текст B"));
 
 		entropyArea.add(individualPanel, BorderLayout.CENTER);
 	}
@@ -303,20 +393,47 @@ public class App {
 		return card;
 	}
 
-	private JPanel createTextPanel(TextAnalyser analyser, String title) {
+	private JPanel createTextPanel(TextAnalyser analyser, String hash, String intervalTarget, String title) {
 		JPanel panel = new JPanel(new BorderLayout());
 		panel.setBorder(BorderFactory.createCompoundBorder(
 				BorderFactory.createTitledBorder(title),
 				BorderFactory.createEmptyBorder(10, 10, 10, 10)
 		));
 
-		JTextArea textArea = createResultText(analyser.getNormalized().length(),
+		JTextArea textArea = createResultText(analyser.getLength(),
 				analyser.getDefaultEntropy(), analyser.getMarkovEntropy());
 
 		panel.add(new JScrollPane(textArea), BorderLayout.CENTER);
+		panel.add(createIntervalPanel(analyser, hash, intervalTarget), BorderLayout.SOUTH);
 		return panel;
 	}
 
+	// Бутстреп заметно дороже самого анализа, поэтому считается отдельной задачей по кнопке;
+	// уже посчитанный для этого текста интервал показывается сразу
+	private JPanel createIntervalPanel(TextAnalyser analyser, String hash, String target) {
+		JPanel holder = new JPanel(new BorderLayout());
+		EntropyBootstrap cached = intervals.get(hash);
+		if (cached != null) {
+			holder.add(createIntervalText(cached), BorderLayout.CENTER);
+			return holder;
+		}
+		JButton button = new JButton("Доверительные интервалы");
+		button.addActionListener(e -> pipeline.submit(target,
+				progress -> cachedInterval(hash, analyser, progress),
+				fillWhenReady(holder, this::createIntervalText)));
+		holder.add(button, BorderLayout.CENTER);
+		return holder;
+	}
+
+	private JTextArea createIntervalText(EntropyBootstrap interval) {
+		JTextArea text = new JTextArea();
+		text.setEditable(false);
+		text.setText(String.format("%.0f%% интервал энтропии: [%.3f; %.3f]\n%.0f%% интервал марковской энтропии: [%.3f; %.3f]",
+				interval.getConfidence() * 100, interval.getDefaultEntropyLow(), interval.getDefaultEntropyHigh(),
+				interval.getConfidence() * 100, interval.getMarkovEntropyLow(), interval.getMarkovEntropyHigh()));
+		return text;
+	}
+
 
 	private void showErrorMessage(JPanel comparisonPanel, JPanel entropyArea) {
 		comparisonPanel.add(new JLabel("Загрузите оба текста для сравнения", JLabel.CENTER));
@@ -324,7 +441,7 @@ public class App {
 	}
 
 
-	private JTextArea createResultText(int length, double entropy, double markovEntropy) {
+	private JTextArea createResultText(long length, double entropy, double markovEntropy) {
 		JTextArea text = new JTextArea();
 		text.setEditable(false);
 		text.setText(String.format(
@@ -346,9 +463,21 @@ public class App {
 		contentPanel.add(createLanguagePanel("Русские тексты", 0, 6, Color.decode("#E3F2FD")));
 		contentPanel.add(createLanguagePanel("Английские тексты", 6, 6, Color.decode("#F3E5F5")));
 
+		JCheckBox weights = new JCheckBox("Равный вес текстов в корпусе", equalWeights);
+		weights.addActionListener(e -> {
+			equalWeights = weights.isSelected();
+			refreshCorpus(0);
+			refreshCorpus(1);
+		});
+		JPanel options = new JPanel();
+		options.add(weights);
+
 		mainPanel.add(titleLabel, BorderLayout.NORTH);
 		mainPanel.add(contentPanel, BorderLayout.CENTER);
+		mainPanel.add(options, BorderLayout.SOUTH);
 
+		refreshCorpus(0);
+		refreshCorpus(1);
 		return mainPanel;
 	}
 
@@ -374,91 +503,164 @@ public class App {
 			buttonPanel.add(button);
 		}
 
+		JLabel corpusLabel = new JLabel(" ", JLabel.CENTER);
+		corpusLabel.setBorder(BorderFactory.createEmptyBorder(8, 0, 0, 0));
+		corpusLabels[start / 6] = corpusLabel;
+
 		panel.add(buttonPanel, BorderLayout.CENTER);
+		panel.add(corpusLabel, BorderLayout.SOUTH);
 		return panel;
 	}
 
-	private void loadTextFile(int index, JButton button) {
-		String text = chooseAndLoadFile();
-		if (text != null) {
-			loadedTexts[index] = text;
-			button.setText("Текст " + (index + 1) + " ✓");
+	// Корпус группы собирается из уже посчитанных текстов; новый текст добавляет только свой анализ
+	private void refreshCorpus(int group) {
+		JLabel label = corpusLabels[group];
+		List<Path> files = new ArrayList<>();
+		List<String> hashes = new ArrayList<>();
+		for (int i = group * 6; i < group * 6 + 6; i++) {
+			if (loadedTexts[i] != null) {
+				files.add(loadedTexts[i]);
+				hashes.add(textHashes[i]);
+			}
 		}
-	}
+		if (files.isEmpty()) {
+			pipeline.cancel("corpus:" + group);
+			label.setText("Корпус: нет загруженных текстов");
+			return;
+		}
+		boolean equal = equalWeights;
+		label.setText("Корпус: вычисление...");
+		pipeline.submit("corpus:" + group, progress -> {
+			CorpusModel corpus = new CorpusModel();
+			for (int i = 0; i < files.size(); i++) {
+				TextAnalyser text = cachedAnalyser(files.get(i), hashes.get(i), false, progress);
+				corpus.add(text, equal ? 1.0 / Math.max(1, text.getLength()) : 1);
+			}
+			return corpus;
+		}, new AnalysisPipeline.Listener<CorpusModel>() {
+			@Override
+			public void progress(int percent) {
+				label.setText("Корпус: вычисление... " + percent + "%");
+			}
 
+			@Override
+			public void done(CorpusModel corpus) {
+				label.setText(String.format("Корпус: текстов %d, H = %.4f, H1 = %.4f",
+						corpus.getTextCount(), corpus.getDefaultEntropy(), corpus.getMarkovEntropy()));
+			}
 
-	private JTable createCombinedTable(Map<String, Integer> bigrams, Map<Character, Integer> charFreq,
-									   int length, String tableType) {
-		if (bigrams == null || bigrams.isEmpty()) {
-			return new JTable(new Object[][]{{"Нет данных"}}, new String[]{"Нет данных"});
+			@Override
+			public void failed(Exception e) {
+				label.setText("Корпус: не удалось выполнить анализ");
+			}
+		});
+	}
+
+	private void invalidateCards(int index) {
+		if (analysisCards != null) {
+			pipeline.cancel("analysis1:" + index);
+			analysisCards.invalidate(index);
+		}
+		if (diagramCards != null) {
+			pipeline.cancel("diagram:" + index);
+			diagramCards.invalidate(index);
 		}
+	}
 
-		List<Character> chars = getUniqueChars(bigrams);
-		int size = chars.size();
+	private void loadTextFile(int index, JButton button) {
+		Path file = chooseFile();
+		if (file != null) {
+			loading.submit(index, progress -> {
+				try (Stage stage = Stage.start("app.hash", 0)) {
+					String hash = ContentHash.of(file, progress);
+					stage.input(Files.size(file));
+					return hash;
+				}
+			}, new AnalysisPipeline.Listener<String>() {
+				@Override
+				public void progress(int percent) {
+					button.setText("Текст " + (index + 1) + " " + percent + "%");
+				}
 
-		String[] columns = new String[size + 1];
-		Object[][] data = new Object[size][size + 1];
+				@Override
+				public void done(String hash) {
+					String previous = textHashes[index];
+					loadedTexts[index] = file;
+					textHashes[index] = hash;
+					invalidateCards(index);
+					if (corpusLabels[index / 6] != null && corpusLabels[index / 6].isShowing()) {
+						refreshCorpus(index / 6);
+					}
+					if (previous != null && !previous.equals(hash) && !Arrays.asList(textHashes).contains(previous)) {
+						analyses.invalidate(key -> key.startsWith(previous));
+						pairs.invalidate(key -> key.contains(previous));
+					}
+					button.setText("Текст " + (index + 1) + " ✓");
+				}
 
-		setupTableStructure(columns, data, chars, bigrams, charFreq, length, tableType);
-		return createStyledTable(data, columns, tableType);
+				@Override
+				public void failed(Exception e) {
+					button.setText("Текст " + (index + 1) + (loadedTexts[index] != null ? " ✓" : ""));
+				}
+			});
+		}
 	}
 
-	private List<Character> getUniqueChars(Map<String, Integer> bigrams) {
-		Set<Character> uniqueChars = new TreeSet<>();
-		for (String bigram : bigrams.keySet()) {
-			uniqueChars.add(bigram.charAt(0));
-			uniqueChars.add(bigram.charAt(1));
+
+	private JTable createBigramTable(TextAnalyser analyser, boolean conditional) {
+		long length = analyser.getLength();
+		if (length == 0) {
+			return new JTable(new Object[][]{{"Нет данных"}}, new String[]{"Нет данных"});
 		}
-		return new ArrayList<>(uniqueChars);
-	}
 
-	private void setupTableStructure(String[] columns, Object[][] data, List<Character> chars,
-									 Map<String, Integer> bigrams, Map<Character, Integer> charFreq,
-									 int length, String tableType) {
-		columns[0] = "A\\B";
-		for (int i = 0; i < chars.size(); i++) {
-			columns[i + 1] = String.valueOf(chars.get(i));
+		int[] symbols = usedSymbols(analyser);
+		String[] labels = new String[symbols.length];
+		for (int i = 0; i < symbols.length; i++) {
+			labels[i] = String.valueOf(analyser.symbols().symbol(symbols[i]));
 		}
 
-		for (int i = 0; i < chars.size(); i++) {
-			data[i][0] = chars.get(i);
-			for (int j = 0; j < chars.size(); j++) {
-				String bigram = chars.get(i) + "" + chars.get(j);
-				int countAB = bigrams.getOrDefault(bigram, 0);
-
-				switch (tableType) {
-					case "conditional":
-						double p_AB = (double) countAB / length;
-						double p_A = (double) charFreq.getOrDefault(chars.get(i), 0) / length;
-						double conditionalProb = p_A > 0 ? p_AB / p_A : 0;
-						data[i][j + 1] = String.format("%.3f", conditionalProb * 100);
-						break;
-					case "joint":
-						double jointProb = (double) countAB / length;
-						data[i][j + 1] = String.format("%.3f", jointProb * 100);
-						break;
-					case "freq":
-					default:
-						data[i][j + 1] = String.format("%.3f", (double) countAB / length * 100);
-						break;
+		HeatTableModel.Cell cell;
+		if (conditional) {
+			cell = (row, column) -> {
+				long countA = analyser.letterCount(symbols[row]);
+				return countA > 0 ? (double) analyser.bigramCount(symbols[row], symbols[column]) / countA * 100 : 0;
+			};
+		} else {
+			cell = (row, column) -> (double) analyser.bigramCount(symbols[row], symbols[column]) / length * 100;
+		}
+		return createStyledTable(new HeatTableModel("A\\B", labels, labels, conditional ? 20.0 : 1.5, cell));
+	}
+
+	// Символы, встречающиеся хотя бы в одной биграмме, в порядке кодов
+	private int[] usedSymbols(TextAnalyser analyser) {
+		Alphabet alphabet = analyser.symbols();
+		Set<Character> used = new TreeSet<>();
+		for (int a = 0; a < alphabet.size(); a++) {
+			for (int b = 0; b < alphabet.size(); b++) {
+				if (analyser.bigramCount(a, b) > 0) {
+					used.add(alphabet.symbol(a));
+					used.add(alphabet.symbol(b));
 				}
 			}
 		}
+		return used.stream().mapToInt(alphabet::indexOf).toArray();
 	}
 
-	private JTable createStyledTable(Object[][] data, String[] columns, String tableType) {
-		JTable table = new JTable(data, columns);
+	private JTable createStyledTable(HeatTableModel model) {
+		JTable table = new JTable(model);
 
 		table.setFont(new Font("Arial", Font.PLAIN, 11));
 		table.setRowHeight(25);
 		table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
-		table.getColumnModel().getColumn(0).setPreferredWidth(60);
 
 		for (int i = 0; i < table.getColumnCount(); i++) {
 			table.getColumnModel().getColumn(i).setPreferredWidth(50);
 		}
 
-		table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+		DefaultTableCellRenderer renderer = new DefaultTableCellRenderer() {
+			// Рендерер вызывается только из EDT, формат можно переиспользовать
+			private final DecimalFormat format = new DecimalFormat("0.000");
+
 			@Override
 			public Component getTableCellRendererComponent(JTable table, Object value,
 														   boolean isSelected, boolean hasFocus, int row, int column) {
@@ -467,117 +669,194 @@ public class App {
 				((JLabel) c).setBorder(BorderFactory.createEmptyBorder(3, 8, 3, 8));
 				((JLabel) c).setHorizontalAlignment(JLabel.CENTER);
 
-				if (!isSelected) {
-					c.setBackground(Color.WHITE);
-					c.setForeground(Color.BLACK);
-				}
-
-				if (!isSelected && value != null && column > 0) {
-					try {
-						String stringValue = value.toString().replace("%", "").replace(",", ".").trim();
-						double numericValue = Double.parseDouble(stringValue);
-
-						if (numericValue == 0) {
-							c.setBackground(Color.WHITE);
-						} else {
-							double normalizedValue;
-							switch (tableType) {
-								case "conditional":
-									normalizedValue = Math.min(numericValue / 20.0, 1.0);
-									break;
-								case "char":
-									normalizedValue = Math.min(numericValue / 12.0, 1.0); // предполагаем макс 10%
-									break;
-								case "freq":
-								default:
-									normalizedValue = Math.min(numericValue / 1.5, 1.0); // предполагаем макс 5%
-									break;
-							}
-
-							// Градиент от белого к зеленому
-							int green = 255;
-							int red = (int) (255 - (normalizedValue * 200));
-							int blue = (int) (255 - (normalizedValue * 200));
-
-							red = Math.max(red, 55);
-							blue = Math.max(blue, 55);
-
-							Color cellColor = new Color(red, green, blue);
-							c.setBackground(cellColor);
-						}
-						c.setForeground(Color.BLACK);
-
-					} catch (NumberFormatException ignored) {}
-				}
-
 				if (isSelected) {
 					c.setBackground(table.getSelectionBackground());
 					c.setForeground(table.getSelectionForeground());
+				} else {
+					c.setBackground(value instanceof Double ? model.heat((Double) value) : Color.WHITE);
+					c.setForeground(Color.BLACK);
 				}
-
 				return c;
 			}
-		});
+
+			@Override
+			protected void setValue(Object value) {
+				setText(value instanceof Double ? format.format(value) : String.valueOf(value));
+			}
+		};
+		table.setDefaultRenderer(Object.class, renderer);
+		table.setDefaultRenderer(String.class, renderer);
+		table.setDefaultRenderer(Double.class, renderer);
 
 		return table;
 	}
 
-	private String chooseAndLoadFile() {
+	private Path chooseFile() {
 		JFileChooser fileChooser = new JFileChooser();
 		fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
 		fileChooser.setDragEnabled(true);
 		FileNameExtensionFilter text = new FileNameExtensionFilter("Текстовые файлы (*.txt)", "txt");
+		FileNameExtensionFilter compressed = new FileNameExtensionFilter("Сжатые тексты (*.gz, *.zip)", "gz", "zip");
+		FileNameExtensionFilter snapshot = new FileNameExtensionFilter("Сохранённые анализы (*.snap)", "snap");
 		fileChooser.setAcceptAllFileFilterUsed(false);
 		fileChooser.addChoosableFileFilter(text);
+		fileChooser.addChoosableFileFilter(compressed);
+		fileChooser.addChoosableFileFilter(snapshot);
+		fileChooser.setFileFilter(text);
 
 		fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
 		if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-			File file = fileChooser.getSelectedFile();
-			try {
-				return Files.readString(file.toPath());
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			return fileChooser.getSelectedFile().toPath();
 		}
 		return null;
 	}
 
-	private JPanel createDiagramPanel() {
-		JPanel mainPanel = new JPanel(new BorderLayout());
-		JPanel chartPanel = new JPanel(new CardLayout());
+	// Анализ с сохранённым нормализованным текстом годится и там, где он не нужен.
+	// Вызывается из потоков AnalysisPipeline, поэтому путь и хеш передаются из EDT.
+	private TextAnalyser cachedAnalyser(Path file, String hash, boolean retainNormalized, Progress progress)
+			throws IOException {
+		TextAnalyser retained = analyses.get(hash + ":normalized");
+		if (retained != null) {
+			return retained;
+		}
+		if (file.getFileName().toString().endsWith(".snap")) {
+			// В снимке нет текста, поэтому сравнение пар для него недоступно
+			if (retainNormalized) {
+				throw new IllegalStateException("Snapshot has no normalized text: " + file);
+			}
+			return analyses.get(hash, () -> Snapshot.read(file).toAnalyser());
+		}
+		if (retainNormalized) {
+			return analyses.get(hash + ":normalized", () -> loadAnalyser(file, true, progress));
+		}
+		return analyses.get(hash, () -> loadAnalyser(file, false, progress));
+	}
 
-		for (int i = 0; i < 12; i++) {
-			JFreeChart chart = createChart("Текст " + (i + 1),
-					loadedTexts[i] != null ? new TextAnalyser(loadedTexts[i]).getAlphabet() : null,
-					loadedTexts[i] != null ? new TextAnalyser(loadedTexts[i]).getNormalized().length() : 0);
+	@SuppressWarnings("try")
+	private TextAnalyser loadAnalyser(Path file, boolean retainNormalized, Progress progress) throws IOException {
+		try (Stage stage = Stage.start("app.load", Files.size(file))) {
+			if (CompressedText.isCompressed(file)) {
+				return CompressedText.analyse(file, retainNormalized, Alphabet.DEFAULT, progress);
+			}
+			TextEncoding encoding = TextEncoding.detect(file);
+			if (encoding != TextEncoding.UTF_8) {
+				return encoding.analyse(file, retainNormalized, Alphabet.DEFAULT, progress);
+			}
+			return parallelAnalyser.analyse(file, retainNormalized, progress);
+		}
+	}
 
-			CategoryPlot plot = chart.getCategoryPlot();
-			ValueAxis rangeAxis = plot.getRangeAxis();
-			rangeAxis.setUpperBound(0.18);
-			rangeAxis.setAutoRange(false);
+	// Пара в обратном порядке получается транспонированием уже посчитанной таблицы
+	private PairedTextAnalyser cachedPair(String firstHash, String secondHash, TextAnalyser first, TextAnalyser second) {
+		return pairs.get(firstHash + ":" + secondHash, () -> {
+			PairedTextAnalyser reversed = pairs.get(secondHash + ":" + firstHash);
+			return reversed != null ? reversed.reversed() : new PairedTextAnalyser(first, second);
+		});
+	}
 
-			chartPanel.add(new ChartPanel(chart), "chart_" + i);
-		}
+	// Блочный бутстреп по тексту с тем же хешем считается один раз
+	private EntropyBootstrap cachedInterval(String hash, TextAnalyser analyser, Progress progress) throws IOException {
+		return intervals.get(hash, () -> new EntropyBootstrap(analyser, EntropyBootstrap.DEFAULT_REPLICATES,
+				EntropyBootstrap.defaultBlockLength(analyser.getLength()), EntropyBootstrap.DEFAULT_CONFIDENCE,
+				Runtime.getRuntime().availableProcessors(), hash.hashCode(), progress));
+	}
 
-		mainPanel.add(createChartControls(chartPanel), BorderLayout.NORTH);
-		mainPanel.add(chartPanel, BorderLayout.CENTER);
+	// Показывает в holder индикатор выполнения, пока задача не вернёт результат
+	private <T> AnalysisPipeline.Listener<T> fillWhenReady(JPanel holder, Function<T, ? extends Component> view) {
+		return fillWhenReady(holder, view, () -> {});
+	}
+
+	// finished вызывается после показа результата или ошибки
+	private <T> AnalysisPipeline.Listener<T> fillWhenReady(JPanel holder, Function<T, ? extends Component> view,
+														   Runnable finished) {
+		JProgressBar progressBar = new JProgressBar(0, 100);
+		progressBar.setStringPainted(true);
+		JPanel pending = new JPanel(new GridBagLayout());
+		pending.add(progressBar);
+		showInHolder(holder, pending);
+
+		return new AnalysisPipeline.Listener<T>() {
+			@Override
+			public void progress(int percent) {
+				progressBar.setValue(percent);
+			}
+
+			@Override
+			@SuppressWarnings("try")
+			public void done(T result) {
+				try (Stage stage = Stage.start("app.render", 0)) {
+					showInHolder(holder, view.apply(result));
+				}
+				finished.run();
+			}
+
+			@Override
+			public void failed(Exception e) {
+				showInHolder(holder, new JLabel("Не удалось выполнить анализ", JLabel.CENTER));
+				finished.run();
+			}
+		};
+	}
+
+	private void showInHolder(JPanel holder, Component content) {
+		holder.removeAll();
+		holder.setLayout(new BorderLayout());
+		holder.add(content, BorderLayout.CENTER);
+		holder.revalidate();
+		holder.repaint();
+	}
+
+	private static long cacheWeight(TextAnalyser analyser) {
+		long counts = (long) analyser.symbols().size() * (analyser.symbols().size() + 1) * Long.BYTES;
+		return counts + (analyser.retainsNormalized() ? analyser.getLength() : 0);
+	}
+
+	private JPanel createDiagramPanel() {
+		JPanel mainPanel = new JPanel(new BorderLayout());
+		diagramCards = new LazyCards(12, (i, holder, ready) -> {
+			String title = "Текст " + (i + 1);
+			if (loadedTexts[i] != null) {
+				Path file = loadedTexts[i];
+				String hash = textHashes[i];
+				pipeline.submit("diagram:" + i, progress -> cachedAnalyser(file, hash, false, progress),
+						fillWhenReady(holder, analyser -> createChartPanel(title, analyser), ready));
+			} else {
+				showInHolder(holder, createChartPanel(title, null));
+				ready.run();
+			}
+		});
+
+		mainPanel.add(createChartControls(diagramCards), BorderLayout.NORTH);
+		mainPanel.add(diagramCards.panel(), BorderLayout.CENTER);
 		return mainPanel;
 	}
 
-	private JPanel createChartControls(JPanel chartPanel) {
+	private ChartPanel createChartPanel(String title, TextAnalyser analyser) {
+		JFreeChart chart = createChart(title,
+				analyser != null ? analyser.getAlphabet() : null,
+				analyser != null ? analyser.getLength() : 0);
+
+		CategoryPlot plot = chart.getCategoryPlot();
+		ValueAxis rangeAxis = plot.getRangeAxis();
+		rangeAxis.setUpperBound(0.18);
+		rangeAxis.setAutoRange(false);
+		return new ChartPanel(chart);
+	}
+
+	private JPanel createChartControls(LazyCards cards) {
 		JPanel controls = new JPanel();
 		JButton prev = new JButton("← Пред");
 		JButton next = new JButton("След →");
 
-		prev.addActionListener(e -> ((CardLayout) chartPanel.getLayout()).previous(chartPanel));
-		next.addActionListener(e -> ((CardLayout) chartPanel.getLayout()).next(chartPanel));
+		prev.addActionListener(e -> cards.move(-1));
+		next.addActionListener(e -> cards.move(1));
 
 		controls.add(prev);
 		controls.add(next);
 		return controls;
 	}
 
-	private JFreeChart createChart(String title, Map<Character, Integer> frequencies, int length) {
+	private JFreeChart createChart(String title, Map<Character, Integer> frequencies, long length) {
 		DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 		if(frequencies != null) {
 			for(Character key : frequencies.keySet()) {
@@ -590,4 +869,23 @@ public class App {
 
 		return ChartFactory.createBarChart(title, "Символы", "Частота", dataset);
 	}
+
+	private static final class Comparison {
+		final TextAnalyser soloA;
+		final TextAnalyser soloB;
+		final PairedTextAnalyser pairedAB;
+		final PairedTextAnalyser pairedBA;
+		final String hashA;
+		final String hashB;
+
+		Comparison(TextAnalyser soloA, TextAnalyser soloB, PairedTextAnalyser pairedAB, PairedTextAnalyser pairedBA,
+				   String hashA, String hashB) {
+			this.soloA = soloA;
+			this.soloB = soloB;
+			this.pairedAB = pairedAB;
+			this.pairedBA = pairedBA;
+			this.hashA = hashA;
+			this.hashB = hashB;
+		}
+	}
 }
\ No newline at end of file
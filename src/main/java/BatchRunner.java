@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Пакетный режим без графического интерфейса: не должен загружать классы AWT/Swing
+public class BatchRunner {
+	private static final String USAGE = "Usage: Main --batch <dir|glob> --out <results.csv|results.json>"
+			+ " [--workers <n>] [--pair <first> <second>]... [--snapshots <dir>] [--split-zip] [--metrics]\n"
+			+ "       Main --merge <merged.snap> <first.snap> <second.snap>...\n"
+			+ "       Main --tail <file> [--interval <ms>]\n"
+			+ "       Main --serve [--port <n>] [--workers <n>] [--queue <n>] [--max-bytes <n>] [--root <dir>]";
+	private static final String SNAPSHOT_SUFFIX = ".snap";
+
+	private final String input;
+	private final Path output;
+	private final int workers;
+	private final List<Path[]> pairs;
+	private final Path snapshots;
+	private final boolean splitZip;
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+
+	public BatchRunner(String input, Path output, int workers, List<Path[]> pairs) {
+		this(input, output, workers, pairs, null);
+	}
+
+	// snapshots — каталог, куда сохраняется снимок каждого проанализированного текста, или null
+	public BatchRunner(String input, Path output, int workers, List<Path[]> pairs, Path snapshots) {
+		this(input, output, workers, pairs, snapshots, false);
+	}
+
+	// splitZip — каждый текстовый элемент архива .zip становится отдельной записью archive.zip!/entry.txt
+	public BatchRunner(String input, Path output, int workers, List<Path[]> pairs, Path snapshots, boolean splitZip) {
+		this.input = input;
+		this.output = output;
+		this.workers = workers;
+		this.pairs = pairs;
+		this.snapshots = snapshots;
+		this.splitZip = splitZip;
+	}
+
+	public static int execute(String[] args) {
+		String input = null;
+		Path output = null;
+		int workers = Runtime.getRuntime().availableProcessors();
+		List<Path[]> pairs = new ArrayList<>();
+		Path snapshots = null;
+		boolean splitZip = false;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+					case "--batch": input = args[++i]; break;
+					case "--out": output = Paths.get(args[++i]); break;
+					case "--workers": workers = Integer.parseInt(args[++i]); break;
+					case "--pair": pairs.add(new Path[]{Paths.get(args[++i]), Paths.get(args[++i])}); break;
+					case "--snapshots": snapshots = Paths.get(args[++i]); break;
+					case "--split-zip": splitZip = true; break;
+					case "--metrics": Metrics.enable(); break;
+					default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+			if (input == null || output == null || workers < 1) {
+				throw new IllegalArgumentException("--batch and --out are required");
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return 2;
+		}
+
+		try {
+			return new BatchRunner(input, output, workers, pairs, snapshots, splitZip).run() ? 0 : 1;
+		} catch (IOException e) {
+			System.err.println("Batch failed: " + e);
+			return 1;
+		}
+	}
+
+	// Объединяет снимки в порядке аргументов, как если бы тексты были склеены
+	public static int merge(String[] args) {
+		if (args.length < 4) {
+			System.err.println(USAGE);
+			return 2;
+		}
+		try {
+			Snapshot merged = Snapshot.read(Paths.get(args[2]));
+			for (int i = 3; i < args.length; i++) {
+				merged = merged.merge(Snapshot.read(Paths.get(args[i])));
+			}
+			merged.write(Paths.get(args[1]));
+			System.err.printf("Merged %d snapshots: %d symbols, H = %.4f, H1 = %.4f%n", args.length - 2,
+					merged.getLength(), merged.getDefaultEntropy(), merged.getMarkovEntropy());
+			return 0;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Merge failed: " + e);
+			return 1;
+		}
+	}
+
+	// Следит за дописываемым файлом и печатает энтропии после каждого изменения, пока процесс не остановят
+	public static int tail(String[] args) {
+		Path file;
+		long interval = 1000;
+		try {
+			file = Paths.get(args[1]);
+			for (int i = 2; i < args.length; i++) {
+				if (args[i].equals("--interval")) {
+					interval = Long.parseLong(args[++i]);
+				} else {
+					throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return 2;
+		}
+		try (TailAnalyser analyser = new TailAnalyser(file)) {
+			System.out.println("offset,length,default_entropy,markov_entropy");
+			analyser.follow(interval, (result, offset) -> System.out.printf("%d,%d,%s,%s%n", offset,
+					result.getLength(), result.getDefaultEntropy(), result.getMarkovEntropy()));
+			return 0;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (IOException e) {
+			System.err.println("Tail failed: " + e);
+			return 1;
+		}
+	}
+
+	public boolean run() throws IOException {
+		long started = System.nanoTime();
+		// CallerRunsPolicy ограничивает очередь: обход каталога не уходит далеко вперёд обработки
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(workers * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+		if (snapshots != null) {
+			Files.createDirectories(snapshots);
+		}
+		try (ResultWriter writer = ResultWriter.open(output)) {
+			try (Stream<Path> files = listFiles(input)) {
+				Path result = output.toAbsolutePath().normalize();
+				Path snapshotDir = snapshots != null ? snapshots.toAbsolutePath().normalize() : null;
+				files.filter(file -> !file.toAbsolutePath().normalize().equals(result))
+						.filter(file -> snapshotDir == null || !file.toAbsolutePath().normalize().startsWith(snapshotDir))
+						.forEach(file -> executor.execute(() -> analyseText(writer, file)));
+			}
+			for (Path[] pair : pairs) {
+				executor.execute(() -> analysePair(writer, pair[0], pair[1]));
+			}
+			executor.shutdown();
+			awaitTermination(executor);
+		} finally {
+			executor.shutdownNow();
+		}
+		System.err.printf("Done: %d analysed, %d failed in %d ms%n",
+				completed.get(), failed.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		if (Metrics.isEnabled()) {
+			Metrics.dump(System.err);
+		}
+		return failed.get() == 0;
+	}
+
+	private void analyseText(ResultWriter writer, Path file) {
+		long started = System.nanoTime();
+		try {
+			if (splitZip && CompressedText.isZip(file)) {
+				analyseEntries(writer, file);
+				return;
+			}
+			TextAnalyser analyser;
+			if (file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX)) {
+				analyser = Snapshot.read(file).toAnalyser();
+			} else {
+				analyser = TextEncoding.analyseFile(file, false);
+				if (snapshots != null) {
+					Snapshot.of(analyser, ContentHash.of(file))
+							.write(snapshots.resolve(file.getFileName() + SNAPSHOT_SUFFIX));
+				}
+			}
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+			writer.writeText(file, analyser, millis);
+			report(file.toString(), millis);
+		} catch (IOException | RuntimeException e) {
+			fail(writer, file, null, e);
+		}
+	}
+
+	private void analyseEntries(ResultWriter writer, Path zip) throws IOException {
+		long started = System.nanoTime();
+		for (Map.Entry<String, TextAnalyser> entry : CompressedText.analyseEntries(zip, false).entrySet()) {
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+			Path name = Paths.get(zip + "!", entry.getKey());
+			writer.writeText(name, entry.getValue(), millis);
+			report(name.toString(), millis);
+			started = System.nanoTime();
+		}
+	}
+
+	private void analysePair(ResultWriter writer, Path first, Path second) {
+		long started = System.nanoTime();
+		try {
+			TextAnalyser firstAnalyser = TextEncoding.analyseFile(first, true);
+			TextAnalyser secondAnalyser = TextEncoding.analyseFile(second, true);
+			PairedTextAnalyser pairedAB = new PairedTextAnalyser(firstAnalyser, secondAnalyser);
+			PairedTextAnalyser pairedBA = pairedAB.reversed();
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+			writer.writePair(first, second, pairedAB, pairedBA, millis);
+			report(first + " + " + second, millis);
+		} catch (IOException | RuntimeException e) {
+			fail(writer, first, second, e);
+		}
+	}
+
+	private void report(String name, long millis) {
+		Metrics.increment("batch.completed", 1);
+		System.err.printf("[%d] %s: %d ms%n", completed.incrementAndGet(), name, millis);
+	}
+
+	private void fail(ResultWriter writer, Path first, Path second, Exception error) {
+		failed.incrementAndGet();
+		Metrics.increment("batch.failed", 1);
+		System.err.printf("FAILED %s%s: %s%n", first, second != null ? " + " + second : "", error);
+		try {
+			writer.writeError(first, second, error);
+		} catch (IOException e) {
+			System.err.println("Cannot write result: " + e);
+		}
+	}
+
+	private static void awaitTermination(ThreadPoolExecutor executor) throws IOException {
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// Ждём завершения всех файлов
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Batch interrupted", e);
+		}
+	}
+
+	// Каталог обходится рекурсивно; аргумент со знаками *?[{ считается glob-шаблоном
+	static Stream<Path> listFiles(String input) throws IOException {
+		int wildcard = indexOfWildcard(input);
+		if (wildcard < 0) {
+			Path path = Paths.get(input);
+			return Files.isDirectory(path) ? Files.walk(path).filter(Files::isRegularFile) : Stream.of(path);
+		}
+		int separator = input.lastIndexOf('/', wildcard);
+		boolean relative = separator < 0;
+		Path root = Paths.get(relative ? "." : input.substring(0, separator + 1));
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+		return Files.walk(root)
+				.filter(Files::isRegularFile)
+				.filter(file -> matcher.matches(relative ? root.relativize(file) : file));
+	}
+
+	private static int indexOfWildcard(String input) {
+		for (int i = 0; i < input.length(); i++) {
+			if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,249 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Анализ сжатых текстов (.gz и .zip с файлами .txt) за один потоковый проход: распакованный текст
+// не пишется во временные файлы и целиком в памяти не держится. Буфер декодирования один на поток
+// и переиспользуется всеми файлами и элементами архива. Прогресс считается в сжатых байтах.
+// Кодировка каждого файла и элемента архива определяется по началу распакованного текста, как в TextEncoding.
+// Размер распакованного текста можно ограничить: маленький архив может распаковываться в гигабайты.
+public class CompressedText {
+	private static final int INFLATE_BUFFER = 1 << 16;
+	private static final ThreadLocal<ByteBuffer> BUFFERS =
+			ThreadLocal.withInitial(() -> ByteBuffer.allocate(StreamUtf8Source.BUFFER_SIZE));
+	private static final ThreadLocal<byte[]> PREFIXES =
+			ThreadLocal.withInitial(() -> new byte[TextEncoding.PREFIX_SIZE]);
+
+	private CompressedText() {
+	}
+
+	public static boolean isCompressed(Path file) {
+		String name = file.getFileName().toString().toLowerCase();
+		return name.endsWith(".gz") || name.endsWith(".zip");
+	}
+
+	// Все текстовые элементы архива zip анализируются как один текст, склеенный в порядке архива
+	public static TextAnalyser analyse(Path file, boolean retainNormalized) throws IOException {
+		return analyse(file, retainNormalized, Alphabet.DEFAULT, Progress.NONE);
+	}
+
+	static TextAnalyser analyse(Path file, boolean retainNormalized, Alphabet alphabet, Progress progress)
+			throws IOException {
+		return analyse(file, retainNormalized, alphabet, progress, Long.MAX_VALUE);
+	}
+
+	// Больше limit распакованных байт (для zip — суммарно по всем элементам) — TooLargeException
+	static TextAnalyser analyse(Path file, boolean retainNormalized, Alphabet alphabet, Progress progress,
+								long limit) throws IOException {
+		progress.expect(Files.size(file));
+		try (Counting raw = new Counting(Files.newInputStream(file))) {
+			if (isZip(file)) {
+				ZipInputStream zip = new ZipInputStream(raw);
+				return TextAnalyser.from(new ZipSource(zip, new Limited(zip, limit), alphabet, raw),
+						retainNormalized, progress);
+			}
+			InputStream text = new Limited(new GZIPInputStream(raw, INFLATE_BUFFER), limit);
+			return TextAnalyser.from(open(text, alphabet, raw::count), retainNormalized, progress);
+		}
+	}
+
+	// Отдельный результат для каждого текстового элемента архива, в порядке архива
+	public static Map<String, TextAnalyser> analyseEntries(Path zip, boolean retainNormalized) throws IOException {
+		return analyseEntries(zip, retainNormalized, Alphabet.DEFAULT, Progress.NONE);
+	}
+
+	static Map<String, TextAnalyser> analyseEntries(Path zip, boolean retainNormalized, Alphabet alphabet,
+													Progress progress) throws IOException {
+		progress.expect(Files.size(zip));
+		Map<String, TextAnalyser> results = new LinkedHashMap<>();
+		try (Counting raw = new Counting(Files.newInputStream(zip)); ZipInputStream in = new ZipInputStream(raw)) {
+			for (ZipEntry entry = nextText(in); entry != null; entry = nextText(in)) {
+				// TextAnalyser.from считает прогресс от нуля для каждого элемента
+				long start = raw.count();
+				SymbolSource source = open(in, alphabet, () -> raw.count() - start);
+				results.put(entry.getName(), TextAnalyser.from(source, retainNormalized, progress));
+			}
+		}
+		return results;
+	}
+
+	// Начало текста читается для определения кодировки и возвращается в поток; поток не закрывается,
+	// пока его не закроет вызывающий, так что элементы zip читаются через него по очереди
+	private static SymbolSource open(InputStream in, Alphabet alphabet, LongSupplier position) throws IOException {
+		byte[] prefix = PREFIXES.get();
+		PushbackInputStream text = new PushbackInputStream(in, prefix.length);
+		int length = TextEncoding.readPrefix(text, prefix);
+		text.unread(prefix, 0, length);
+		return TextEncoding.detect(prefix, length).open(text, alphabet, BUFFERS.get(), position);
+	}
+
+	static boolean isZip(Path file) {
+		return file.getFileName().toString().toLowerCase().endsWith(".zip");
+	}
+
+	private static ZipEntry nextText(ZipInputStream in) throws IOException {
+		for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+			String name = entry.getName();
+			if (!entry.isDirectory() && name.toLowerCase().endsWith(".txt") && !name.startsWith("__MACOSX/")) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	// Элементы архива подряд; каждый декодируется отдельно и в своей кодировке, так что оборванная
+	// последовательность в конце элемента — ошибка, а не склейка с началом следующего
+	private static final class ZipSource implements SymbolSource {
+		private final ZipInputStream zip;
+		private final InputStream entries;
+		private final Alphabet alphabet;
+		private final Counting raw;
+		private SymbolSource entry;
+		private boolean done;
+
+		// entries читает текущий элемент zip (возможно, через ограничитель размера)
+		ZipSource(ZipInputStream zip, InputStream entries, Alphabet alphabet, Counting raw) {
+			this.zip = zip;
+			this.entries = entries;
+			this.alphabet = alphabet;
+			this.raw = raw;
+		}
+
+		@Override
+		public int read(byte[] symbols) throws IOException {
+			while (!done) {
+				if (entry != null) {
+					int count = entry.read(symbols);
+					if (count != -1) {
+						return count;
+					}
+				}
+				if (nextText(zip) == null) {
+					done = true;
+				} else {
+					entry = open(entries, alphabet, raw::count);
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public Alphabet alphabet() {
+			return alphabet;
+		}
+
+		@Override
+		public long position() {
+			return raw.count();
+		}
+
+		@Override
+		public void close() throws IOException {
+			zip.close();
+		}
+	}
+
+	static final class TooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		TooLargeException(long limit) {
+			super("Decompressed text is larger than " + limit + " bytes");
+		}
+	}
+
+	// Не закрывает и не буферизует поток: для zip через него читаются элементы, а переход
+	// к следующему элементу делает сам ZipInputStream
+	private static final class Limited extends FilterInputStream {
+		private final long limit;
+		private long count;
+
+		Limited(InputStream in, long limit) {
+			super(in);
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				counted(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				counted(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			counted(skipped);
+			return skipped;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private void counted(long bytes) throws TooLargeException {
+			count += bytes;
+			if (count > limit) {
+				throw new TooLargeException(limit);
+			}
+		}
+	}
+
+	private static final class Counting extends FilterInputStream {
+		private long count;
+
+		Counting(InputStream in) {
+			super(in);
+		}
+
+		long count() {
+			return count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+// Модель корпуса из уже посчитанных текстов: униграммы и замкнутые биграммы складываются
+// с весами, текст заново не читается. Каждый текст остаётся отдельным кольцом, поэтому между
+// соседними текстами не появляется лишних биграмм. С весами 1 счётчики совпадают с суммой счётчиков текстов.
+public class CorpusModel {
+	private static final double LOG2 = Math.log(2.0);
+	private final Alphabet alphabet;
+	private final int size;
+	private final double[] letters;
+	private final double[] bigrams;
+	private double length;
+	private int texts;
+	private double defaultEntropy = Double.NaN;
+	private double markovEntropy = Double.NaN;
+
+	public CorpusModel() {
+		this(Alphabet.DEFAULT);
+	}
+
+	public CorpusModel(Alphabet alphabet) {
+		this.alphabet = alphabet;
+		this.size = alphabet.size();
+		this.letters = new double[size];
+		this.bigrams = new double[size * size];
+	}
+
+	public CorpusModel add(TextAnalyser text) {
+		return add(text, 1);
+	}
+
+	// weight умножает все счётчики текста; например, 1.0 / text.getLength() уравнивает вклад текстов
+	public synchronized CorpusModel add(TextAnalyser text, double weight) {
+		if (!text.symbols().equals(alphabet)) {
+			throw new IllegalArgumentException("Text uses a different alphabet");
+		}
+		if (!(weight >= 0) || Double.isInfinite(weight)) {
+			throw new IllegalArgumentException("Weight must be finite and non-negative: " + weight);
+		}
+		for (int a = 0; a < size; a++) {
+			long count = text.letterCount(a);
+			if (count == 0) continue;
+			letters[a] += weight * count;
+			for (int b = 0; b < size; b++) {
+				bigrams[a * size + b] += weight * text.bigramCount(a, b);
+			}
+		}
+		length += weight * text.getLength();
+		texts++;
+		defaultEntropy = Double.NaN;
+		markovEntropy = Double.NaN;
+		return this;
+	}
+
+	public synchronized int getTextCount() {
+		return texts;
+	}
+
+	// Взвешенное число символов
+	public synchronized double getLength() {
+		return length;
+	}
+
+	public synchronized double getDefaultEntropy() {
+		if (Double.isNaN(defaultEntropy)) {
+			defaultEntropy = 0;
+			for (double count : letters) {
+				if (count == 0) continue;
+				double p_i = count / length;
+				defaultEntropy += p_i * Math.log(1 / p_i) / LOG2;
+			}
+		}
+		return defaultEntropy;
+	}
+
+	public synchronized double getMarkovEntropy() {
+		if (Double.isNaN(markovEntropy)) {
+			markovEntropy = 0;
+			for (int a = 0; a < size; a++) {
+				if (letters[a] == 0) continue;
+				double p_A = letters[a] / length;
+				for (int b = 0; b < size; b++) {
+					double countAB = bigrams[a * size + b];
+					if (countAB == 0) continue;
+					double p_i = countAB / length;
+					markovEntropy += p_i * Math.log(p_A / p_i) / LOG2;
+				}
+			}
+		}
+		return markovEntropy;
+	}
+
+	public synchronized double getFrequency(char symbol) {
+		int index = alphabet.indexOf(symbol);
+		return index >= 0 && length > 0 ? letters[index] / length : 0;
+	}
+}
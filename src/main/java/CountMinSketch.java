@@ -0,0 +1,114 @@
+// Count-Min sketch над неотрицательными long-ключами: depth строк по width счётчиков.
+// Оценка никогда не меньше истинного счётчика, а с вероятностью не меньше 1 - e^-depth
+// превышает его не больше чем на e/width · total(). При conservative update каждая строка
+// увеличивается только до нового минимума, что заметно снижает завышение при той же памяти.
+final class CountMinSketch {
+	private static final long[] SEEDS = {
+			0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+			0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L,
+	};
+
+	private final int width;
+	private final int depth;
+	private final int mask;
+	private final boolean conservative;
+	private final long[] counts;
+	private long total;
+
+	// width округляется вверх до степени двойки
+	CountMinSketch(int width, int depth, boolean conservative) {
+		if (width < 1 || width > 1 << 30 || depth < 1 || depth > SEEDS.length) {
+			throw new IllegalArgumentException("width must be 1..2^30 and depth 1.." + SEEDS.length
+					+ ": " + width + "x" + depth);
+		}
+		int rounded = 1;
+		while (rounded < width) {
+			rounded <<= 1;
+		}
+		if ((long) rounded * depth > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Sketch is too large: " + rounded + "x" + depth);
+		}
+		this.width = rounded;
+		this.depth = depth;
+		this.mask = this.width - 1;
+		this.conservative = conservative;
+		this.counts = new long[this.width * depth];
+	}
+
+	// Наименьшая ширина, при которой завышение не больше epsilon · total()
+	static int widthFor(double epsilon) {
+		return (int) Math.min(1 << 30, Math.ceil(Math.E / epsilon));
+	}
+
+	// Наименьшая глубина, при которой граница нарушается с вероятностью не больше delta
+	static int depthFor(double delta) {
+		return (int) Math.max(1, Math.ceil(Math.log(1 / delta)));
+	}
+
+	void add(long key) {
+		if (!conservative) {
+			for (int row = 0; row < depth; row++) {
+				counts[index(row, key)]++;
+			}
+		} else {
+			long estimate = estimate(key) + 1;
+			for (int row = 0; row < depth; row++) {
+				int index = index(row, key);
+				if (counts[index] < estimate) {
+					counts[index] = estimate;
+				}
+			}
+		}
+		total++;
+	}
+
+	long estimate(long key) {
+		long min = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, counts[index(row, key)]);
+		}
+		return min;
+	}
+
+	// Сумма по ячейкам сохраняет гарантию Count-Min для объединённого потока;
+	// выигрыш conservative update при этом сохраняется только внутри каждой части
+	void merge(CountMinSketch other) {
+		if (other.width != width || other.depth != depth) {
+			throw new IllegalArgumentException("Sketch dimensions differ: " + width + "x" + depth
+					+ " and " + other.width + "x" + other.depth);
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		total += other.total;
+	}
+
+	// Граница завышения e/width · total(), выполняется с вероятностью 1 - e^-depth
+	double error() {
+		return Math.E / width * total;
+	}
+
+	long total() {
+		return total;
+	}
+
+	int width() {
+		return width;
+	}
+
+	int depth() {
+		return depth;
+	}
+
+	long bytes() {
+		return (long) counts.length * Long.BYTES;
+	}
+
+	private int index(int row, long key) {
+		long h = key ^ SEEDS[row];
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return row * width + (int) (h & mask);
+	}
+}
@@ -0,0 +1,46 @@
+import java.io.IOException;
+import java.io.Writer;
+
+final class CsvResultWriter extends ResultWriter {
+	private static final String HEADER = "type,file,second_file,length,default_entropy,markov_entropy,"
+			+ "conditional_entropy_ab,conditional_entropy_ba,joint_entropy,millis,error";
+
+	CsvResultWriter(Writer out) throws IOException {
+		super(out);
+		out.write(HEADER);
+		out.write('\n');
+		out.flush();
+	}
+
+	@Override
+	protected void writeRecord(Record record) throws IOException {
+		out.write(String.join(",",
+				record.type,
+				quote(record.file),
+				quote(record.secondFile),
+				value(record.length),
+				value(record.defaultEntropy),
+				value(record.markovEntropy),
+				value(record.conditionalEntropyAB),
+				value(record.conditionalEntropyBA),
+				value(record.jointEntropy),
+				Long.toString(record.millis),
+				quote(record.error)));
+		out.write('\n');
+	}
+
+	private static String value(Object value) {
+		return value != null ? value.toString() : "";
+	}
+
+	private static String quote(Object value) {
+		if (value == null) {
+			return "";
+		}
+		String text = value.toString();
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+			return text;
+		}
+		return '"' + text.replace("\"", "\"\"") + '"';
+	}
+}
@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Доверительные интервалы энтропий блочным бутстрепом: нормализованный текст режется на
+// непересекающиеся блоки, реплика составляется из стольких же блоков, выбранных с возвращением.
+// Счётчики биграмм каждого блока (пара, начинающаяся в блоке, с замыканием последнего символа на первый,
+// как в TextAnalyser) хранятся заранее в разреженном виде, поэтому реплика — сумма разреженных
+// векторов блоков, а не проход по тексту. Униграммы — суммы строк таблицы биграмм.
+// Интервалы базовые (2·θ − квантиль реплик): подстановочная оценка энтропии занижена, и у реплик
+// смещение ещё больше, поэтому процентильный интервал на коротких текстах лежит целиком ниже оценки.
+// Реплики делятся на порции со своим генератором, так что при том же seed результат не зависит от числа потоков.
+public class EntropyBootstrap {
+	public static final int DEFAULT_REPLICATES = 1000;
+	public static final double DEFAULT_CONFIDENCE = 0.95;
+	private static final long DEFAULT_SEED = 0x5EED;
+	private static final int CHUNK = 64;
+	private static final double LOG2 = Math.log(2.0);
+
+	private final int replicates;
+	private final int blockLength;
+	private final double confidence;
+	private final double defaultEntropy;
+	private final double markovEntropy;
+	private final double[] defaultEntropies;
+	private final double[] markovEntropies;
+
+	public static EntropyBootstrap of(TextAnalyser text, int replicates, int parallelism) {
+		return of(text, replicates, defaultBlockLength(text.getLength()), DEFAULT_CONFIDENCE, parallelism, DEFAULT_SEED);
+	}
+
+	public static EntropyBootstrap of(TextAnalyser text, int replicates, int blockLength, double confidence,
+									  int parallelism, long seed) {
+		try {
+			return new EntropyBootstrap(text, replicates, blockLength, confidence, parallelism, seed, Progress.NONE);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// Не меньше 64 символов и не больше ~1024 блоков, чтобы реплика стоила O(1024 · различных биграмм блока)
+	public static int defaultBlockLength(long length) {
+		return (int) Math.max(64, (length + 1023) / 1024);
+	}
+
+	@SuppressWarnings("try")
+	EntropyBootstrap(TextAnalyser text, int replicates, int blockLength, double confidence, int parallelism,
+					 long seed, Progress progress) throws IOException {
+		if (replicates < 1 || blockLength < 1) {
+			throw new IllegalArgumentException("replicates and blockLength must be positive");
+		}
+		if (!(confidence > 0 && confidence < 1)) {
+			throw new IllegalArgumentException("Confidence must be in (0, 1): " + confidence);
+		}
+		this.replicates = replicates;
+		this.blockLength = blockLength;
+		this.confidence = confidence;
+		this.defaultEntropy = text.getDefaultEntropy();
+		this.markovEntropy = text.getMarkovEntropy();
+		this.defaultEntropies = new double[replicates];
+		this.markovEntropies = new double[replicates];
+		byte[] symbols = text.normalizedSymbols();
+		if (symbols.length == 0) {
+			Arrays.fill(defaultEntropies, Double.NaN);
+			Arrays.fill(markovEntropies, Double.NaN);
+			return;
+		}
+		Blocks blocks;
+		try (Stage stage = Stage.start("bootstrap-blocks", symbols.length)) {
+			blocks = new Blocks(symbols, text.symbols().size(), blockLength);
+		}
+		int chunks = (replicates + CHUNK - 1) / CHUNK;
+		AtomicInteger next = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int t = 0; t < Math.min(parallelism, chunks); t++) {
+			tasks.add(() -> {
+				// Буферы одного потока переиспользуются всеми его репликами
+				long[] table = new long[blocks.size * blocks.size];
+				long[] rows = new long[blocks.size];
+				for (int chunk = next.getAndIncrement(); chunk < chunks; chunk = next.getAndIncrement()) {
+					SplittableRandom random = new SplittableRandom(seed + chunk * 0x9E3779B97F4A7C15L);
+					for (int r = chunk * CHUNK; r < Math.min(replicates, (chunk + 1) * CHUNK); r++) {
+						replicate(blocks, random, table, rows, r);
+					}
+					progress.advance(1);
+				}
+				return null;
+			});
+		}
+		progress.expect(chunks);
+		try (Stage stage = Stage.start("bootstrap", (long) replicates * blocks.count)) {
+			Parallel.invokeAll(tasks, parallelism);
+		}
+		Arrays.sort(defaultEntropies);
+		Arrays.sort(markovEntropies);
+	}
+
+	private void replicate(Blocks blocks, SplittableRandom random, long[] table, long[] rows, int index) {
+		Arrays.fill(table, 0);
+		Arrays.fill(rows, 0);
+		for (int i = 0; i < blocks.count; i++) {
+			int block = random.nextInt(blocks.count);
+			for (int e = blocks.start[block]; e < blocks.start[block + 1]; e++) {
+				table[blocks.bigram[e]] += blocks.bigramCount[e];
+			}
+		}
+		int size = blocks.size;
+		long total = 0;
+		double jointSum = 0;
+		for (int a = 0; a < size; a++) {
+			for (int b = 0; b < size; b++) {
+				long count = table[a * size + b];
+				if (count == 0) continue;
+				rows[a] += count;
+				jointSum += count * Math.log(count);
+			}
+			total += rows[a];
+		}
+		double rowSum = 0;
+		for (long row : rows) {
+			if (row > 0) {
+				rowSum += row * Math.log(row);
+			}
+		}
+		// H = log2 N − Σ c·log2 c / N, H(B|A) = (Σ r·log2 r − Σ c·log2 c) / N
+		defaultEntropies[index] = (Math.log(total) - rowSum / total) / LOG2;
+		markovEntropies[index] = (rowSum - jointSum) / total / LOG2;
+	}
+
+	public int getReplicates() {
+		return replicates;
+	}
+
+	public int getBlockLength() {
+		return blockLength;
+	}
+
+	public double getConfidence() {
+		return confidence;
+	}
+
+	public double getDefaultEntropyLow() {
+		return 2 * defaultEntropy - quantile(defaultEntropies, (1 + confidence) / 2);
+	}
+
+	public double getDefaultEntropyHigh() {
+		return 2 * defaultEntropy - quantile(defaultEntropies, (1 - confidence) / 2);
+	}
+
+	public double getMarkovEntropyLow() {
+		return 2 * markovEntropy - quantile(markovEntropies, (1 + confidence) / 2);
+	}
+
+	public double getMarkovEntropyHigh() {
+		return 2 * markovEntropy - quantile(markovEntropies, (1 - confidence) / 2);
+	}
+
+	// Стандартные ошибки — разброс реплик
+	public double getDefaultEntropyError() {
+		return deviation(defaultEntropies);
+	}
+
+	public double getMarkovEntropyError() {
+		return deviation(markovEntropies);
+	}
+
+	// Линейная интерполяция между соседними отсортированными репликами
+	private static double quantile(double[] sorted, double q) {
+		double position = q * (sorted.length - 1);
+		int lower = (int) Math.floor(position);
+		int upper = Math.min(lower + 1, sorted.length - 1);
+		return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+	}
+
+	private static double deviation(double[] values) {
+		if (values.length < 2) {
+			return 0;
+		}
+		double mean = 0;
+		for (double value : values) {
+			mean += value;
+		}
+		mean /= values.length;
+		double sum = 0;
+		for (double value : values) {
+			sum += (value - mean) * (value - mean);
+		}
+		return Math.sqrt(sum / (values.length - 1));
+	}
+
+	// Разреженные счётчики биграмм блоков: записи блока i лежат в [start[i], start[i + 1])
+	private static final class Blocks {
+		final int size;
+		final int count;
+		final int[] start;
+		final char[] bigram;
+		final int[] bigramCount;
+
+		Blocks(byte[] symbols, int size, int blockLength) {
+			this.size = size;
+			this.count = (int) ((symbols.length + (long) blockLength - 1) / blockLength);
+			this.start = new int[count + 1];
+			int[] dense = new int[size * size];
+			int[] touched = new int[Math.min(size * size, blockLength)];
+			char[] bigram = new char[Math.min(symbols.length, 1 << 16)];
+			int[] counts = new int[bigram.length];
+			int entries = 0;
+			for (int block = 0; block < count; block++) {
+				int distinct = 0;
+				int from = block * blockLength;
+				int to = Math.min(symbols.length, from + blockLength);
+				for (int i = from; i < to; i++) {
+					int next = i + 1 < symbols.length ? symbols[i + 1] : symbols[0];
+					int index = symbols[i] * size + next;
+					if (dense[index]++ == 0) {
+						touched[distinct++] = index;
+					}
+				}
+				if (entries + distinct > bigram.length) {
+					int capacity = Math.max(bigram.length * 2, entries + distinct);
+					bigram = Arrays.copyOf(bigram, capacity);
+					counts = Arrays.copyOf(counts, capacity);
+				}
+				for (int t = 0; t < distinct; t++) {
+					bigram[entries] = (char) touched[t];
+					counts[entries++] = dense[touched[t]];
+					dense[touched[t]] = 0;
+				}
+				start[block + 1] = entries;
+			}
+			this.bigram = Arrays.copyOf(bigram, entries);
+			this.bigramCount = Arrays.copyOf(counts, entries);
+		}
+	}
+}
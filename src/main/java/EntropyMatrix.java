@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+// Условные и совместные энтропии для всех пар текстов. Каждый текст нормализуется один раз
+// (анализаторы должны хранить нормализованные символы), совместная таблица каждой неупорядоченной
+// пары считается один раз: H(B|A) берётся из транспонированной таблицы, H(A,B) = H(B,A).
+public class EntropyMatrix {
+	private final int size;
+	private final double[][] conditional;
+	private final double[][] joint;
+
+	public static EntropyMatrix of(List<TextAnalyser> texts, int parallelism) {
+		try {
+			return new EntropyMatrix(texts, parallelism, Progress.NONE);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	EntropyMatrix(List<TextAnalyser> texts, int parallelism, Progress progress) throws IOException {
+		for (TextAnalyser text : texts) {
+			if (!text.retainsNormalized()) {
+				throw new IllegalArgumentException("Matrix requires analysers with retained normalized text");
+			}
+		}
+		size = texts.size();
+		conditional = new double[size][size];
+		joint = new double[size][size];
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			for (int j = i; j < size; j++) {
+				int first = i;
+				int second = j;
+				tasks.add(() -> {
+					fill(first, second, new PairedTextAnalyser(texts.get(first), texts.get(second)));
+					progress.advance(1);
+					return null;
+				});
+			}
+		}
+		progress.expect(tasks.size());
+		Parallel.invokeAll(tasks, parallelism);
+	}
+
+	// Каждая задача пишет только свои ячейки [i][j] и [j][i]; invokeAll публикует их вызывающему потоку
+	private void fill(int i, int j, PairedTextAnalyser pair) {
+		conditional[i][j] = pair.getConditionalEntropy();
+		joint[i][j] = pair.getJointEntropy();
+		if (i != j) {
+			conditional[j][i] = pair.reversed().getConditionalEntropy();
+			joint[j][i] = joint[i][j];
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// H(i|j) — энтропия текста i при известном тексте j, как PairedTextAnalyser(i, j)
+	public double getConditionalEntropy(int i, int j) {
+		return conditional[i][j];
+	}
+
+	public double getJointEntropy(int i, int j) {
+		return joint[i][j];
+	}
+}
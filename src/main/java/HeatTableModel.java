@@ -0,0 +1,69 @@
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+
+// Таблица чисел с подписями строк в первом столбце. Значения вычисляются при запросе ячейки,
+// поэтому форматируются только видимые ячейки, а цвет берётся из заранее построенной палитры.
+final class HeatTableModel extends AbstractTableModel {
+	private static final long serialVersionUID = 1L;
+	private static final Color[] PALETTE = new Color[256];
+
+	static {
+		// Градиент от белого к зелёному
+		for (int level = 0; level < PALETTE.length; level++) {
+			double normalizedValue = (double) level / (PALETTE.length - 1);
+			int redBlue = Math.max((int) (255 - normalizedValue * 200), 55);
+			PALETTE[level] = new Color(redBlue, 255, redBlue);
+		}
+	}
+
+	private final String corner;
+	private final String[] rows;
+	private final String[] columns;
+	private final Cell cell;
+	// Значение, которому соответствует самый насыщенный цвет
+	private final double scale;
+
+	HeatTableModel(String corner, String[] rows, String[] columns, double scale, Cell cell) {
+		this.corner = corner;
+		this.rows = rows;
+		this.columns = columns;
+		this.scale = scale;
+		this.cell = cell;
+	}
+
+	@Override
+	public int getRowCount() {
+		return rows.length;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columns.length + 1;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return column == 0 ? corner : columns[column - 1];
+	}
+
+	@Override
+	public Class<?> getColumnClass(int column) {
+		return column == 0 ? String.class : Double.class;
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		return column == 0 ? rows[row] : cell.value(row, column - 1);
+	}
+
+	Color heat(double value) {
+		if (value == 0 || Double.isNaN(value)) {
+			return Color.WHITE;
+		}
+		return PALETTE[(int) (Math.min(value / scale, 1.0) * (PALETTE.length - 1))];
+	}
+
+	interface Cell {
+		double value(int row, int column);
+	}
+}
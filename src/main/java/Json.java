@@ -0,0 +1,43 @@
+final class Json {
+	private Json() {
+	}
+
+	// Пропускает null; ставит запятую, если объект уже не пуст
+	static void field(StringBuilder json, String name, Object value) {
+		if (value == null) {
+			return;
+		}
+		char last = json.charAt(json.length() - 1);
+		if (last != '{') {
+			json.append(',');
+		}
+		string(json, name);
+		json.append(':');
+		if (value instanceof Number || value instanceof Boolean) {
+			json.append(value);
+		} else {
+			string(json, value.toString());
+		}
+	}
+
+	static void string(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': json.append("\\\""); break;
+				case '\\': json.append("\\\\"); break;
+				case '\n': json.append("\\n"); break;
+				case '\r': json.append("\\r"); break;
+				case '\t': json.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						json.append(String.format("\\u%04x", (int) c));
+					} else {
+						json.append(c);
+					}
+			}
+		}
+		json.append('"');
+	}
+}
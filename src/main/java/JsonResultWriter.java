@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.io.Writer;
+
+// Массив JSON дописывается по одному объекту; закрывающая скобка ставится в close()
+final class JsonResultWriter extends ResultWriter {
+	private boolean first = true;
+
+	JsonResultWriter(Writer out) throws IOException {
+		super(out);
+		out.write('[');
+		out.flush();
+	}
+
+	@Override
+	protected void writeRecord(Record record) throws IOException {
+		StringBuilder json = new StringBuilder(first ? "\n  {" : ",\n  {");
+		first = false;
+		Json.field(json, "type", record.type);
+		Json.field(json, "file", record.file);
+		Json.field(json, "secondFile", record.secondFile);
+		Json.field(json, "length", record.length);
+		Json.field(json, "defaultEntropy", record.defaultEntropy);
+		Json.field(json, "markovEntropy", record.markovEntropy);
+		Json.field(json, "conditionalEntropyAB", record.conditionalEntropyAB);
+		Json.field(json, "conditionalEntropyBA", record.conditionalEntropyBA);
+		Json.field(json, "jointEntropy", record.jointEntropy);
+		Json.field(json, "millis", record.millis);
+		Json.field(json, "error", record.error);
+		json.append('}');
+		out.write(json.toString());
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.write("\n]\n");
+		super.close();
+	}
+}
@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+// Совместные энтропии двух текстов в зависимости от сдвига: при сдвиге k символ first[i]
+// ставится в пару с second[i + k] на всём перекрытии. Сдвиги делятся на блоки по LAG_BLOCK,
+// каждый блок считает свои таблицы в отдельной задаче, проходя тексты кусками по POSITION_BLOCK,
+// чтобы куски обоих текстов оставались в кэше для всех сдвигов блока. Маргинальные распределения
+// берутся из той же таблицы, т.е. только по перекрытию.
+public class LagProfile {
+	private static final double LOG2 = Math.log(2.0);
+	private static final int LAG_BLOCK = 16;
+	private static final int POSITION_BLOCK = 1 << 12;
+	// c·ln c для частых малых счётчиков
+	private static final double[] XLOGX = new double[1 << 12];
+
+	static {
+		for (int c = 1; c < XLOGX.length; c++) {
+			XLOGX[c] = c * Math.log(c);
+		}
+	}
+
+	private final int minLag;
+	private final int[] overlap;
+	private final double[] conditional;
+	private final double[] joint;
+	private final double[] mutualInformation;
+
+	public static LagProfile scan(TextAnalyser first, TextAnalyser second, int minLag, int maxLag, int parallelism) {
+		try {
+			return new LagProfile(first, second, minLag, maxLag, parallelism, Progress.NONE);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@SuppressWarnings("try")
+	LagProfile(TextAnalyser firstAnalyser, TextAnalyser secondAnalyser, int minLag, int maxLag, int parallelism,
+			   Progress progress) throws IOException {
+		if (minLag > maxLag) {
+			throw new IllegalArgumentException("minLag > maxLag: " + minLag + " > " + maxLag);
+		}
+		Alphabet symbols = firstAnalyser.symbols();
+		if (!symbols.equals(secondAnalyser.symbols())) {
+			throw new IllegalArgumentException("Texts use different alphabets");
+		}
+		byte[] first = firstAnalyser.normalizedSymbols();
+		byte[] second = secondAnalyser.normalizedSymbols();
+		int lags = maxLag - minLag + 1;
+		this.minLag = minLag;
+		this.overlap = new int[lags];
+		this.conditional = new double[lags];
+		this.joint = new double[lags];
+		this.mutualInformation = new double[lags];
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < lags; from += LAG_BLOCK) {
+			int block = from;
+			tasks.add(() -> {
+				scanBlock(first, second, symbols.size(), block, Math.min(block + LAG_BLOCK, lags));
+				progress.advance(1);
+				return null;
+			});
+		}
+		progress.expect(tasks.size());
+		try (Stage stage = Stage.start("lag-scan", (long) lags * Math.min(first.length, second.length))) {
+			Parallel.invokeAll(tasks, parallelism);
+		}
+	}
+
+	// Сдвиги minLag + [from, to); каждая задача пишет только свои элементы массивов
+	private void scanBlock(byte[] first, byte[] second, int size, int from, int to) {
+		int[][] tables = new int[to - from][size * size];
+		int start = Integer.MAX_VALUE;
+		int end = 0;
+		for (int l = from; l < to; l++) {
+			int lag = minLag + l;
+			start = Math.min(start, Math.max(0, -lag));
+			end = Math.max(end, Math.min(first.length, second.length - lag));
+		}
+		for (int block = start; block < end; block += POSITION_BLOCK) {
+			int blockEnd = Math.min(block + POSITION_BLOCK, end);
+			for (int l = from; l < to; l++) {
+				int lag = minLag + l;
+				int[] table = tables[l - from];
+				int lo = Math.max(block, Math.max(0, -lag));
+				int hi = Math.min(blockEnd, Math.min(first.length, second.length - lag));
+				for (int i = lo; i < hi; i++) {
+					table[first[i] * size + second[i + lag]]++;
+				}
+			}
+		}
+		int[] rows = new int[size];
+		int[] columns = new int[size];
+		for (int l = from; l < to; l++) {
+			fill(l, tables[l - from], size, rows, columns);
+		}
+	}
+
+	private void fill(int index, int[] table, int size, int[] rows, int[] columns) {
+		Arrays.fill(rows, 0);
+		Arrays.fill(columns, 0);
+		long total = 0;
+		double jointSum = 0;
+		for (int a = 0; a < size; a++) {
+			for (int b = 0; b < size; b++) {
+				int count = table[a * size + b];
+				if (count == 0) continue;
+				rows[a] += count;
+				columns[b] += count;
+				total += count;
+				jointSum += xlogx(count);
+			}
+		}
+		overlap[index] = (int) total;
+		if (total == 0) {
+			conditional[index] = joint[index] = mutualInformation[index] = Double.NaN;
+			return;
+		}
+		double rowSum = 0;
+		double columnSum = 0;
+		for (int s = 0; s < size; s++) {
+			rowSum += xlogx(rows[s]);
+			columnSum += xlogx(columns[s]);
+		}
+		// H = log2 N − Σ c·log2 c / N
+		double log2N = Math.log(total) / LOG2;
+		double hJoint = log2N - jointSum / total / LOG2;
+		double hFirst = log2N - rowSum / total / LOG2;
+		double hSecond = log2N - columnSum / total / LOG2;
+		joint[index] = hJoint;
+		conditional[index] = hJoint - hSecond;
+		mutualInformation[index] = Math.max(0, hFirst + hSecond - hJoint);
+	}
+
+	private static double xlogx(int count) {
+		return count < XLOGX.length ? XLOGX[count] : count * Math.log(count);
+	}
+
+	public int getMinLag() {
+		return minLag;
+	}
+
+	public int getMaxLag() {
+		return minLag + overlap.length - 1;
+	}
+
+	// Число пар символов при данном сдвиге
+	public int getOverlap(int lag) {
+		return overlap[lag - minLag];
+	}
+
+	// H(A|B) по перекрытию
+	public double getConditionalEntropy(int lag) {
+		return conditional[lag - minLag];
+	}
+
+	public double getJointEntropy(int lag) {
+		return joint[lag - minLag];
+	}
+
+	public double getMutualInformation(int lag) {
+		return mutualInformation[lag - minLag];
+	}
+
+	// Сдвиг с наибольшей взаимной информацией среди сдвигов с перекрытием не меньше minOverlap
+	public int getBestLag(int minOverlap) {
+		int best = minLag;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < overlap.length; i++) {
+			if (overlap[i] >= minOverlap && mutualInformation[i] > bestValue) {
+				bestValue = mutualInformation[i];
+				best = minLag + i;
+			}
+		}
+		return best;
+	}
+}
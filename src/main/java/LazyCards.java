@@ -0,0 +1,75 @@
+import javax.swing.*;
+import java.awt.*;
+
+// Карточки CardLayout, которые строятся при первом показе и сохраняются до invalidate().
+// Все методы вызываются из EDT.
+final class LazyCards {
+	private final JPanel panel = new JPanel(new CardLayout());
+	private final JPanel[] holders;
+	private final boolean[] started;
+	private final boolean[] ready;
+	private final Builder builder;
+	private int current;
+
+	LazyCards(int count, Builder builder) {
+		this.builder = builder;
+		holders = new JPanel[count];
+		started = new boolean[count];
+		ready = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			holders[i] = new JPanel(new BorderLayout());
+			panel.add(holders[i], String.valueOf(i));
+		}
+	}
+
+	JPanel panel() {
+		return panel;
+	}
+
+	int current() {
+		return current;
+	}
+
+	int size() {
+		return holders.length;
+	}
+
+	// Показывает карточку со сдвигом от текущей, по кругу
+	void move(int direction) {
+		show(Math.floorMod(current + direction, holders.length));
+	}
+
+	void show(int index) {
+		current = index;
+		if (!started[index]) {
+			started[index] = true;
+			int card = index;
+			builder.build(index, holders[index], () -> ready[card] = true);
+		}
+		((CardLayout) panel.getLayout()).show(panel, String.valueOf(index));
+	}
+
+	// Текст в слоте сменился: карточка будет построена заново при следующем показе
+	void invalidate(int index) {
+		started[index] = false;
+		ready[index] = false;
+		holders[index].removeAll();
+		if (index == current && panel.isShowing()) {
+			show(index);
+		}
+	}
+
+	// Незавершённые построения были отменены вместе с задачами анализа
+	void abandonPending() {
+		for (int i = 0; i < holders.length; i++) {
+			if (started[i] && !ready[i]) {
+				started[i] = false;
+			}
+		}
+	}
+
+	interface Builder {
+		// Заполняет holder; ready вызывается, когда карточка окончательно построена
+		void build(int index, JPanel holder, Runnable ready);
+	}
+}
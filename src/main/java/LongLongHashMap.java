@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+// Открытая адресация с линейным пробированием; ключи хранятся со сдвигом +1, 0 означает пустую ячейку.
+// Счётчики long: в тексте длиннее 2^31 символов частая k-грамма переполнила бы int
+final class LongLongHashMap {
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+	private long[] keys;
+	private long[] values;
+	private int mask;
+	private int shift;
+	private int size;
+
+	LongLongHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	// key должен быть неотрицательным и меньше Long.MAX_VALUE
+	void add(long key, long delta) {
+		long stored = key + 1;
+		int slot = slot(stored);
+		while (true) {
+			long current = keys[slot];
+			if (current == stored) {
+				values[slot] += delta;
+				return;
+			}
+			if (current == 0) {
+				keys[slot] = stored;
+				values[slot] = delta;
+				if (++size > (mask + 1) * 3 / 4) {
+					rehash();
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	long get(long key) {
+		long stored = key + 1;
+		int slot = slot(stored);
+		while (true) {
+			long current = keys[slot];
+			if (current == stored) {
+				return values[slot];
+			}
+			if (current == 0) {
+				return 0;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void forEach(EntryConsumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				consumer.accept(keys[i] - 1, values[i]);
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill(keys, 0);
+		size = 0;
+	}
+
+	private int slot(long stored) {
+		return (int) ((stored * GOLDEN) >>> shift);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long stored = oldKeys[i];
+			if (stored != 0) {
+				int slot = slot(stored);
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = stored;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	interface EntryConsumer {
+		void accept(long key, long value);
+	}
+}
@@ -0,0 +1,74 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+final class LruCache<K, V> {
+	private final long capacity;
+	private final ToLongFunction<V> weigher;
+	private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight;
+
+	// capacity — суммарный вес записей; weigher задаёт вес одной записи
+	LruCache(long capacity, ToLongFunction<V> weigher) {
+		this.capacity = capacity;
+		this.weigher = weigher;
+	}
+
+	synchronized V get(K key) {
+		return entries.get(key);
+	}
+
+	// Значение вычисляется вне блокировки; при гонке остаётся первое сохранённое
+	<E extends Exception> V get(K key, Loader<V, E> loader) throws E {
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+		value = loader.load();
+		synchronized (this) {
+			V existing = entries.get(key);
+			if (existing != null) {
+				return existing;
+			}
+			put(key, value);
+		}
+		return value;
+	}
+
+	synchronized void put(K key, V value) {
+		V previous = entries.put(key, value);
+		if (previous != null) {
+			weight -= weigher.applyAsLong(previous);
+		}
+		weight += weigher.applyAsLong(value);
+		Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+		while (weight > capacity && eldest.hasNext()) {
+			Map.Entry<K, V> entry = eldest.next();
+			if (entry.getKey().equals(key)) continue;
+			weight -= weigher.applyAsLong(entry.getValue());
+			eldest.remove();
+		}
+	}
+
+	synchronized void invalidate(Predicate<K> filter) {
+		Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<K, V> entry = it.next();
+			if (filter.test(entry.getKey())) {
+				weight -= weigher.applyAsLong(entry.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	interface Loader<V, E extends Exception> {
+		V load() throws E;
+	}
+}
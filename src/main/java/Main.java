@@ -1,6 +1,26 @@
 public class Main {
 	public static void main(String[] args)
 	{
+		if (args.length > 0 && args[0].equals("--batch")) {
+			System.setProperty("java.awt.headless", "true");
+			System.exit(BatchRunner.execute(args));
+		}
+		if (args.length > 0 && args[0].equals("--merge")) {
+			System.setProperty("java.awt.headless", "true");
+			System.exit(BatchRunner.merge(args));
+		}
+		if (args.length > 0 && args[0].equals("--tail")) {
+			System.setProperty("java.awt.headless", "true");
+			System.exit(BatchRunner.tail(args));
+		}
+		if (args.length > 0 && args[0].equals("--serve")) {
+			System.setProperty("java.awt.headless", "true");
+			int status = AnalysisServer.execute(args);
+			if (status != 0) {
+				System.exit(status);
+			}
+			return;
+		}
 		new App(720, 480);
 	}
 }
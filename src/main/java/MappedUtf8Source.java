@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Path;
+
+final class MappedUtf8Source implements SymbolSource {
+	private final MappedWindows windows;
+	private final Alphabet alphabet;
+	private final boolean partialEnd;
+
+	MappedUtf8Source(Path path) throws IOException {
+		this(path, Alphabet.DEFAULT);
+	}
+
+	MappedUtf8Source(Path path, Alphabet alphabet) throws IOException {
+		this(new MappedWindows(path), alphabet, false);
+	}
+
+	// Читает диапазон [start, end) общего канала; start должен указывать на начало последовательности
+	MappedUtf8Source(FileChannel channel, long start, long end) throws IOException {
+		this(channel, start, end, Alphabet.DEFAULT, false);
+	}
+
+	// Для дописываемых файлов: незавершённая последовательность в конце не ошибка, чтение останавливается
+	// перед ней, и position() указывает на её начало
+	MappedUtf8Source(FileChannel channel, long start, long end, Alphabet alphabet, boolean partialEnd)
+			throws IOException {
+		this(new MappedWindows(channel, false, start, end), alphabet, partialEnd);
+	}
+
+	private MappedUtf8Source(MappedWindows windows, Alphabet alphabet, boolean partialEnd) {
+		this.windows = windows;
+		this.alphabet = alphabet;
+		this.partialEnd = partialEnd;
+	}
+
+	@Override
+	public int read(byte[] symbols) throws IOException {
+		while (true) {
+			MappedByteBuffer window = windows.window();
+			if (window != null && window.hasRemaining()) {
+				int before = window.position();
+				int count = Utf8Decoder.decode(window, symbols, alphabet);
+				if (window.position() > before) {
+					return count;
+				}
+				if (windows.isLast()) {
+					if (partialEnd) {
+						return -1;
+					}
+					// Файл обрывается посреди многобайтовой последовательности
+					throw new MalformedInputException(window.remaining());
+				}
+			}
+			if (!windows.next()) {
+				return -1;
+			}
+		}
+	}
+
+	@Override
+	public Alphabet alphabet() {
+		return alphabet;
+	}
+
+	@Override
+	public long position() {
+		return windows.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		windows.close();
+	}
+}
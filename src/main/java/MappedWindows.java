@@ -0,0 +1,65 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Последовательное отображение диапазона [start, end) файла окнами по 64 МБ. Следующее окно
+// начинается с текущей позиции в предыдущем, так что непрочитанный хвост окна (например, начало
+// разрезанной последовательности UTF-8) попадает в начало следующего.
+final class MappedWindows implements Closeable {
+	private static final long WINDOW_SIZE = 64L << 20;
+	private final FileChannel channel;
+	private final boolean ownsChannel;
+	private final long start;
+	private final long end;
+	private long windowStart;
+	private MappedByteBuffer window;
+
+	MappedWindows(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ), true, 0, -1);
+	}
+
+	// end < 0 — до конца файла
+	MappedWindows(FileChannel channel, boolean ownsChannel, long start, long end) throws IOException {
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.start = start;
+		this.windowStart = start;
+		this.end = end >= 0 ? end : channel.size();
+	}
+
+	// Текущее окно; null до первого вызова next()
+	MappedByteBuffer window() {
+		return window;
+	}
+
+	// Отображает следующее окно; false, если диапазон прочитан до конца
+	boolean next() throws IOException {
+		long next = window == null ? windowStart : windowStart + window.position();
+		if (next >= end) {
+			return false;
+		}
+		windowStart = next;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(WINDOW_SIZE, end - next));
+		return true;
+	}
+
+	// Текущее окно доходит до конца диапазона
+	boolean isLast() {
+		return window != null && windowStart + window.limit() >= end;
+	}
+
+	// Прочитано байт от начала диапазона
+	long position() {
+		return (window == null ? windowStart : windowStart + window.position()) - start;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (ownsChannel) {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Энтропия марковских моделей порядков k за один проход. Каждый k-грамм упаковывается в long
+// (индексы символов в системе счисления по основанию размера алфавита), текст считается замкнутым
+// в кольцо, как в TextAnalyser, поэтому H_1 совпадает с getMarkovEntropy().
+public class MarkovAnalyser {
+	private static final int CHUNK_SIZE = 1 << 16;
+	private final int[] orders;
+	private final double[] entropies;
+	private final long length;
+
+	public MarkovAnalyser(String text, int... orders) {
+		try {
+			Counter counter = new Counter(Alphabet.DEFAULT, orders);
+			count(new ReaderSymbolSource(new StringReader(text)), counter);
+			this.orders = counter.orders;
+			this.length = counter.length;
+			this.entropies = counter.entropies();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private MarkovAnalyser(Counter counter) {
+		this.orders = counter.orders;
+		this.length = counter.length;
+		this.entropies = counter.entropies();
+	}
+
+	public static MarkovAnalyser from(Path path, int... orders) throws IOException {
+		try (SymbolSource source = new MappedUtf8Source(path)) {
+			Counter counter = new Counter(Alphabet.DEFAULT, orders);
+			count(source, counter);
+			return new MarkovAnalyser(counter);
+		}
+	}
+
+	public static MarkovAnalyser from(Reader reader, int... orders) throws IOException {
+		Counter counter = new Counter(Alphabet.DEFAULT, orders);
+		count(new ReaderSymbolSource(reader), counter);
+		return new MarkovAnalyser(counter);
+	}
+
+	public static int maxOrder() {
+		return Counter.maxOrder(Alphabet.DEFAULT.size());
+	}
+
+	public double getEntropy(int order) {
+		int index = Arrays.binarySearch(orders, order);
+		if (index < 0) {
+			throw new IllegalArgumentException("Order " + order + " was not requested");
+		}
+		return entropies[index];
+	}
+
+	public int[] getOrders() {
+		return orders.clone();
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	private static void count(SymbolSource source, Counter counter) throws IOException {
+		byte[] symbols = new byte[CHUNK_SIZE];
+		int count;
+		while ((count = source.read(symbols)) != -1) {
+			counter.add(symbols, count);
+		}
+	}
+
+	private static final class Counter {
+		private final int size;
+		private final int[] orders;
+		private final int maxOrder;
+		private final long[] powers;
+		private final LongLongHashMap[] grams;
+		private final byte[] head;
+		private long roll;
+		private long length;
+
+		Counter(Alphabet alphabet, int[] requested) {
+			size = alphabet.size();
+			orders = Arrays.stream(requested).distinct().sorted().toArray();
+			if (orders.length == 0 || orders[0] < 0 || orders[orders.length - 1] > maxOrder(size)) {
+				throw new IllegalArgumentException("Orders must be within 0.." + maxOrder(size) + ": "
+						+ Arrays.toString(requested));
+			}
+			maxOrder = orders[orders.length - 1];
+			powers = new long[maxOrder + 2];
+			powers[0] = 1;
+			for (int i = 1; i < powers.length; i++) {
+				powers[i] = powers[i - 1] * size;
+			}
+			grams = new LongLongHashMap[orders.length];
+			for (int i = 0; i < orders.length; i++) {
+				grams[i] = new LongLongHashMap(1 << 10);
+			}
+			head = new byte[maxOrder];
+		}
+
+		// Наибольший порядок k, при котором (k+1)-грамм помещается в long
+		static int maxOrder(int size) {
+			int order = -1;
+			long power = 1;
+			while (power <= Long.MAX_VALUE / size) {
+				power *= size;
+				order++;
+			}
+			return order;
+		}
+
+		void add(byte[] symbols, int count) {
+			long window = powers[maxOrder];
+			for (int i = 0; i < count; i++) {
+				int symbol = symbols[i];
+				if (length < maxOrder) {
+					head[(int) length] = (byte) symbol;
+				}
+				roll = (roll % window) * size + symbol;
+				for (int o = 0; o < orders.length; o++) {
+					int order = orders[o];
+					if (length >= order) {
+						grams[o].add(roll % powers[order + 1], 1);
+					}
+				}
+				length++;
+			}
+		}
+
+		// Дописывает k-граммы, которые переходят через конец текста к его началу
+		private void closeRing() {
+			if (length == 0) return;
+			long window = powers[maxOrder];
+			int headLength = (int) Math.min(length, maxOrder);
+			for (int j = 0; j < maxOrder; j++) {
+				int symbol = head[j % headLength];
+				roll = (roll % window) * size + symbol;
+				long position = length + j;
+				for (int o = 0; o < orders.length; o++) {
+					int order = orders[o];
+					if (j < order && position >= order) {
+						grams[o].add(roll % powers[order + 1], 1);
+					}
+				}
+			}
+		}
+
+		double[] entropies() {
+			closeRing();
+			double[] result = new double[orders.length];
+			if (length == 0) return result;
+			for (int o = 0; o < orders.length; o++) {
+				LongLongHashMap counts = grams[o];
+				LongLongHashMap contexts = new LongLongHashMap(counts.size() / size + 1);
+				counts.forEach((gram, count) -> contexts.add(gram / size, count));
+				double[] entropy = new double[1];
+				counts.forEach((gram, count) -> {
+					double p_i = (double) count / length;
+					double condProb = (double) count / contexts.get(gram / size);
+					entropy[0] += p_i * Math.log(1 / condProb) / Math.log(2.0);
+				});
+				result[o] = entropy[0];
+			}
+			return result;
+		}
+	}
+}
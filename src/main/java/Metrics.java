@@ -0,0 +1,85 @@
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Счётчики и гистограммы задержек этапов внутри процесса. Включается свойством -Dentropy.metrics=true
+// или из пакетного режима; пока выключено, Stage не обращается к реестру вовсе.
+final class Metrics {
+	static final String PROPERTY = "entropy.metrics";
+	private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private static final Map<String, Histogram> stages = new ConcurrentHashMap<>();
+	private static volatile boolean enabled = Boolean.getBoolean(PROPERTY);
+
+	private Metrics() {
+	}
+
+	static boolean isEnabled() {
+		return enabled;
+	}
+
+	static void enable() {
+		enabled = true;
+	}
+
+	static void increment(String counter, long delta) {
+		if (enabled) {
+			counters.computeIfAbsent(counter, name -> new LongAdder()).add(delta);
+		}
+	}
+
+	static void record(String stage, long nanos, long inputSize, long allocated) {
+		stages.computeIfAbsent(stage, name -> new Histogram()).record(nanos, inputSize, allocated);
+	}
+
+	static void dump(PrintStream out) {
+		for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+			out.printf("counter %s = %d%n", counter.getKey(), counter.getValue().sum());
+		}
+		for (Map.Entry<String, Histogram> stage : new TreeMap<>(stages).entrySet()) {
+			out.printf("stage %s: %s%n", stage.getKey(), stage.getValue());
+		}
+	}
+
+	// Корзина i содержит длительности в [2^i, 2^(i+1)) наносекунд
+	private static final class Histogram {
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final LongAdder input = new LongAdder();
+		private final LongAdder allocated = new LongAdder();
+
+		void record(long duration, long inputSize, long allocatedBytes) {
+			buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(duration, 1)));
+			count.increment();
+			nanos.add(duration);
+			input.add(inputSize);
+			allocated.add(Math.max(allocatedBytes, 0));
+		}
+
+		// Верхняя граница корзины, в которую попадает доля quantile всех измерений
+		private double quantileMillis(long total, double quantile) {
+			long rank = (long) Math.ceil(total * quantile);
+			long seen = 0;
+			for (int i = 0; i < buckets.length(); i++) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					return Math.scalb(1.0, i + 1) / 1e6;
+				}
+			}
+			return Double.NaN;
+		}
+
+		@Override
+		public String toString() {
+			long total = count.sum();
+			return String.format("count=%d total=%.1fms mean=%.3fms p50<%.3fms p90<%.3fms p99<%.3fms"
+							+ " input=%d allocated=%d",
+					total, nanos.sum() / 1e6, total > 0 ? nanos.sum() / 1e6 / total : 0,
+					quantileMillis(total, 0.5), quantileMillis(total, 0.9), quantileMillis(total, 0.99),
+					input.sum(), allocated.sum());
+		}
+	}
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Оценка одного документа сразу по всем моделям. Биграммы документа считаются за один проход,
+// затем для каждой модели суммируются только встретившиеся биграммы, поэтому стоимость
+// k моделей — O(длина + k · число различных биграмм). Буферы переиспользуются между вызовами,
+// так что экземпляр не потокобезопасен: по одному на поток.
+public class ModelScorer {
+	private static final double LOG2 = Math.log(2.0);
+
+	private final ReferenceModel[] models;
+	private final Alphabet alphabet;
+	private final int size;
+	private final long[] counts;
+	private final long[] outgoing;
+	private final int[] touched;
+	private final byte[] symbols = new byte[1 << 16];
+	private int distinct;
+	private int previous;
+	private long transitions;
+	private double entropy;
+
+	public ModelScorer(List<ReferenceModel> models) {
+		if (models.isEmpty()) {
+			throw new IllegalArgumentException("No models");
+		}
+		this.models = models.toArray(new ReferenceModel[0]);
+		this.alphabet = this.models[0].getAlphabet();
+		for (ReferenceModel model : this.models) {
+			if (!model.getAlphabet().equals(alphabet)) {
+				throw new IllegalArgumentException("Models use different alphabets");
+			}
+		}
+		this.size = alphabet.size();
+		this.counts = new long[size * size];
+		this.outgoing = new long[size];
+		this.touched = new int[size * size];
+	}
+
+	public int size() {
+		return models.length;
+	}
+
+	// Записывает в crossEntropy[i] и divergence[i] перекрёстную энтропию документа и KL-расхождение
+	// D(документ || модель i) условных распределений P(b|a) в битах на переход; возвращает число переходов
+	public long score(CharSequence text, double[] crossEntropy, double[] divergence) {
+		reset();
+		for (int i = 0, n = text.length(); i < n; i++) {
+			int symbol = alphabet.normalize(text.charAt(i));
+			if (symbol >= 0) {
+				add(symbol);
+			}
+		}
+		return finish(crossEntropy, divergence);
+	}
+
+	public long score(Path path, double[] crossEntropy, double[] divergence) throws IOException {
+		reset();
+		// Как и остальные файловые источники, оборванная в конце последовательность UTF-8 — ошибка
+		try (SymbolSource source = new MappedUtf8Source(path, alphabet)) {
+			int count;
+			while ((count = source.read(symbols)) != -1) {
+				for (int i = 0; i < count; i++) {
+					add(symbols[i]);
+				}
+			}
+		}
+		return finish(crossEntropy, divergence);
+	}
+
+	// Условная энтропия самого документа по открытым биграммам, после последнего score()
+	public double getEntropy() {
+		return entropy;
+	}
+
+	private void reset() {
+		for (int i = 0; i < distinct; i++) {
+			int index = touched[i];
+			counts[index] = 0;
+			outgoing[index / size] = 0;
+		}
+		distinct = 0;
+		previous = -1;
+		transitions = 0;
+	}
+
+	private void add(int symbol) {
+		if (previous >= 0) {
+			int index = previous * size + symbol;
+			if (counts[index]++ == 0) {
+				touched[distinct++] = index;
+			}
+			outgoing[previous]++;
+			transitions++;
+		}
+		previous = symbol;
+	}
+
+	private long finish(double[] crossEntropy, double[] divergence) {
+		if (transitions == 0) {
+			entropy = Double.NaN;
+			Arrays.fill(crossEntropy, 0, models.length, Double.NaN);
+			Arrays.fill(divergence, 0, models.length, Double.NaN);
+			return 0;
+		}
+		double self = 0;
+		for (int i = 0; i < distinct; i++) {
+			int index = touched[i];
+			long count = counts[index];
+			self += count * Math.log((double) outgoing[index / size] / count);
+		}
+		entropy = self / LOG2 / transitions;
+		for (int m = 0; m < models.length; m++) {
+			double[] cost = models[m].costs();
+			double sum = 0;
+			for (int i = 0; i < distinct; i++) {
+				int index = touched[i];
+				sum += counts[index] * cost[index];
+			}
+			crossEntropy[m] = sum / transitions;
+			divergence[m] = crossEntropy[m] - entropy;
+		}
+		return transitions;
+	}
+}
@@ -1,3 +1,4 @@
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -5,7 +6,9 @@ public class PairedTextAnalyser{
 
 	private final TextAnalyser firstAnalyser;
 	private final TextAnalyser secondAnalyser;
-	private final Map<String, Integer> jointMap;
+	private final int[] joint;
+	private volatile Map<String, Integer> jointMap;
+	private final int length;
 	private final double conditionalEntropy;
 	private final double jointEntropy;
 
@@ -18,7 +21,11 @@ public class PairedTextAnalyser{
 	}
 
 	public Map<String, Integer> getJointMap() {
-		return jointMap;
+		Map<String, Integer> map = jointMap;
+		if (map == null) {
+			jointMap = map = createBigramMap();
+		}
+		return map;
 	}
 
 	public String getFirstNormalized() {
@@ -40,32 +47,84 @@ public class PairedTextAnalyser{
 
 	public PairedTextAnalyser(String firstText, String secondText)
 	{
-		this.firstAnalyser = new TextAnalyser(firstText);
-		this.secondAnalyser = new TextAnalyser(secondText);
-		jointMap = createBigramMap(firstAnalyser.getNormalized(), secondAnalyser.getNormalized());
-		conditionalEntropy = conditionalEntropy();
-		jointEntropy = jointEntropy();
+		this(new TextAnalyser(firstText), new TextAnalyser(secondText));
+	}
+
+	public PairedTextAnalyser(TextAnalyser firstAnalyser, TextAnalyser secondAnalyser)
+	{
+		this(firstAnalyser, secondAnalyser, jointCounts(firstAnalyser, secondAnalyser),
+				Integer.min(firstAnalyser.normalizedSymbols().length, secondAnalyser.normalizedSymbols().length));
 	}
 
+	@SuppressWarnings("try")
+	private PairedTextAnalyser(TextAnalyser firstAnalyser, TextAnalyser secondAnalyser, int[] joint, int length)
+	{
+		this.firstAnalyser = firstAnalyser;
+		this.secondAnalyser = secondAnalyser;
+		this.joint = joint;
+		this.length = length;
+		try (Stage stage = Stage.start("pair-entropy", length)) {
+			conditionalEntropy = conditionalEntropy();
+			jointEntropy = jointEntropy();
+		}
+	}
+
+	// Та же пара в обратном порядке: совместная таблица транспонируется без повторного прохода по текстам
+	public PairedTextAnalyser reversed() {
+		int size = firstAnalyser.symbols().size();
+		int[] transposed = new int[joint.length];
+		for (int a = 0; a < size; a++) {
+			for (int b = 0; b < size; b++) {
+				transposed[b * size + a] = joint[a * size + b];
+			}
+		}
+		return new PairedTextAnalyser(secondAnalyser, firstAnalyser, transposed, length);
+	}
 
-	private static Map<String, Integer> createBigramMap(String firstText, String secondText){
+	// Профиль по сдвигам second относительно first в диапазоне [minLag, maxLag]
+	public LagProfile lagProfile(int minLag, int maxLag, int parallelism) {
+		return LagProfile.scan(firstAnalyser, secondAnalyser, minLag, maxLag, parallelism);
+	}
+
+	// joint[a·size + b] — сколько раз символ a первого текста стоит на той же позиции, что b второго
+	@SuppressWarnings("try")
+	static int[] jointCounts(TextAnalyser firstAnalyser, TextAnalyser secondAnalyser) {
+		Alphabet symbols = firstAnalyser.symbols();
+		if (!symbols.equals(secondAnalyser.symbols())) {
+			throw new IllegalArgumentException("Texts use different alphabets");
+		}
+		byte[] first = firstAnalyser.normalizedSymbols();
+		byte[] second = secondAnalyser.normalizedSymbols();
+		int size = symbols.size();
+		int length = Integer.min(first.length, second.length);
+		try (Stage stage = Stage.start("joint-counts", length)) {
+			int[] joint = new int[size * size];
+			for (int i = 0; i < length; i++) {
+				joint[first[i] * size + second[i]]++;
+			}
+			return joint;
+		}
+	}
+
+	private Map<String, Integer> createBigramMap() {
+		Alphabet symbols = firstAnalyser.symbols();
+		int size = symbols.size();
 		Map<String, Integer> bigramMap = new HashMap<>();
-		int length = Integer.min(firstText.length(), secondText.length());
-		for(int i = 0; i < length; i++)
-		{
-			String bigram = firstText.charAt(i) + "" + secondText.charAt(i);
-			bigramMap.merge(bigram, 1, Integer::sum);
+		for (int i = 0; i < joint.length; i++) {
+			if (joint[i] > 0) {
+				bigramMap.put(symbols.symbol(i / size) + "" + symbols.symbol(i % size), joint[i]);
+			}
 		}
-		return bigramMap;
+		return Collections.unmodifiableMap(bigramMap);
 	}
 
 	private double conditionalEntropy() {
 		double entropy = 0;
-		int length = Integer.min(firstAnalyser.getNormalized().length(), secondAnalyser.getNormalized().length());
-
-		for (String key : jointMap.keySet()) {
-			double p_AB = (double) jointMap.get(key) / length;
-			double p_A_given_B = conditionalProbability(key);
+		int size = firstAnalyser.symbols().size();
+		for (int i = 0; i < joint.length; i++) {
+			if (joint[i] == 0) continue;
+			double p_AB = (double) joint[i] / length;
+			double p_A_given_B = conditionalProbability(i % size, p_AB);
 
 			if (p_A_given_B > 0) {
 				double log2 = Math.log(1 / p_A_given_B) / Math.log(2.0);
@@ -76,12 +135,9 @@ public class PairedTextAnalyser{
 	}
 
 
-	private double conditionalProbability(String bigram)
+	private double conditionalProbability(int b, double p_AB)
 	{
-		char b = bigram.charAt(1);
-		int length = Integer.min(firstAnalyser.getNormalized().length(), secondAnalyser.getNormalized().length());
-		double p_AB = (double) jointMap.get(bigram) / length;
-		double p_B = (double) secondAnalyser.getAlphabet().get(b) / length;
+		double p_B = (double) secondAnalyser.letterCount(b) / length;
 		return p_AB/p_B;
 	}
 
@@ -89,14 +145,14 @@ public class PairedTextAnalyser{
 	private double jointEntropy()
 	{
 		double entropy = 0;
-		for(String key : jointMap.keySet())
+		for (int count : joint)
 		{
-			int length = Integer.min(firstAnalyser.getNormalized().length(), secondAnalyser.getNormalized().length());
-			double p_AB = (double) jointMap.get(key) / length;
+			if (count == 0) continue;
+			double p_AB = (double) count / length;
 			double log2 = Math.log(1/p_AB) / Math.log(2.0);
 			entropy += p_AB * log2;
 		}
 		return entropy;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Общий запуск независимых задач: результаты возвращаются в порядке задач, прерывание становится
+// IOException, а исключение задачи пробрасывается как есть (проверяемые, кроме IOException, —
+// внутри IllegalStateException). invokeAll ждёт все задачи, так что их записи видны вызывающему потоку.
+final class Parallel {
+	private Parallel() {
+	}
+
+	// Во временном пуле не больше чем из parallelism потоков
+	static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int parallelism) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, tasks.size())));
+		try {
+			return invokeAll(pool, tasks);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// В долгоживущем пуле владельца; пул не закрывается
+	static <T> List<T> invokeAll(ExecutorService pool, List<? extends Callable<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<>(tasks.size());
+		try {
+			for (Future<T> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Analysis interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		return results;
+	}
+}
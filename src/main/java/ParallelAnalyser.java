@@ -0,0 +1,161 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelAnalyser implements AutoCloseable {
+	private static final int CHUNK_SIZE = 1 << 16;
+	private final ForkJoinPool pool;
+	private final int parallelism;
+	private final long threshold;
+
+	// threshold — размер входа (в символах для строк и в байтах для файлов), ниже которого анализ идёт в одном потоке
+	public ParallelAnalyser(int parallelism, long threshold) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		}
+		this.parallelism = parallelism;
+		this.threshold = Math.max(threshold, 1);
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	public TextAnalyser analyse(String text) {
+		return analyse(text, true);
+	}
+
+	public TextAnalyser analyse(String text, boolean retainNormalized) {
+		if (text.length() < threshold || parallelism == 1) {
+			Shard shard = countChars(text, 0, text.length(), retainNormalized);
+			return new TextAnalyser(shard.counts, shard.symbols);
+		}
+		List<Callable<Shard>> tasks = new ArrayList<>();
+		long chunk = chunkSize(text.length());
+		for (long from = 0; from < text.length(); from += chunk) {
+			int start = (int) from;
+			int end = (int) Math.min(text.length(), from + chunk);
+			tasks.add(() -> countChars(text, start, end, retainNormalized));
+		}
+		try {
+			return merge(tasks, retainNormalized);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public TextAnalyser analyse(Path path) throws IOException {
+		return analyse(path, false);
+	}
+
+	public TextAnalyser analyse(Path path, boolean retainNormalized) throws IOException {
+		return analyse(path, retainNormalized, Progress.NONE);
+	}
+
+	@SuppressWarnings("try")
+	TextAnalyser analyse(Path path, boolean retainNormalized, Progress progress) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			progress.expect(size);
+			if (size < threshold || parallelism == 1) {
+				return TextAnalyser.from(new MappedUtf8Source(channel, 0, size), retainNormalized, progress);
+			}
+			try (Stage stage = Stage.start("parallel-read", size)) {
+				List<Long> bounds = splitAtSequences(channel, size, chunkSize(size));
+				List<Callable<Shard>> tasks = new ArrayList<>();
+				for (int i = 0; i + 1 < bounds.size(); i++) {
+					long start = bounds.get(i);
+					long end = bounds.get(i + 1);
+					tasks.add(() -> countSource(new MappedUtf8Source(channel, start, end), retainNormalized, progress));
+				}
+				return merge(tasks, retainNormalized);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	private long chunkSize(long size) {
+		// Несколько частей на поток, чтобы неравномерные части не задерживали весь пул
+		return Math.max(threshold, (size + parallelism * 4L - 1) / (parallelism * 4L));
+	}
+
+	private TextAnalyser merge(List<Callable<Shard>> tasks, boolean retainNormalized) throws IOException {
+		SymbolCounts counts = new SymbolCounts(Alphabet.DEFAULT);
+		ByteArrayOutputStream retained = retainNormalized ? new ByteArrayOutputStream() : null;
+		for (Shard shard : Parallel.invokeAll(pool, tasks)) {
+			counts.merge(shard.counts);
+			if (retained != null) {
+				retained.write(shard.symbols);
+			}
+		}
+		return new TextAnalyser(counts, retained != null ? retained.toByteArray() : null);
+	}
+
+	private static Shard countChars(String text, int from, int to, boolean retainNormalized) {
+		SymbolCounts counts = new SymbolCounts(Alphabet.DEFAULT);
+		byte[] symbols = new byte[to - from];
+		int count = Alphabet.DEFAULT.normalize(text, from, to, symbols, 0);
+		counts.add(symbols, 0, count);
+		return new Shard(counts, retainNormalized ? Arrays.copyOf(symbols, count) : null);
+	}
+
+	private static Shard countSource(SymbolSource source, boolean retainNormalized, Progress progress)
+			throws IOException {
+		try (source; Stage stage = Stage.start("read", 0)) {
+			SymbolCounts counts = new SymbolCounts(Alphabet.DEFAULT);
+			ByteArrayOutputStream retained = retainNormalized ? new ByteArrayOutputStream() : null;
+			byte[] symbols = new byte[CHUNK_SIZE];
+			long position = 0;
+			int count;
+			while ((count = source.read(symbols)) != -1) {
+				progress.advance(source.position() - position);
+				position = source.position();
+				counts.add(symbols, 0, count);
+				if (retained != null) {
+					retained.write(symbols, 0, count);
+				}
+			}
+			stage.input(position);
+			return new Shard(counts, retained != null ? retained.toByteArray() : null);
+		}
+	}
+
+	// Границы частей сдвигаются вперёд за байты продолжения UTF-8, чтобы не разрезать символ
+	private static List<Long> splitAtSequences(FileChannel channel, long size, long chunk) throws IOException {
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4);
+		for (long bound = chunk; bound < size; bound += chunk) {
+			probe.clear();
+			channel.read(probe, bound);
+			long aligned = bound;
+			for (int i = 0; i < probe.position() && (probe.get(i) & 0xC0) == 0x80; i++) {
+				aligned++;
+			}
+			if (aligned > bounds.get(bounds.size() - 1) && aligned < size) {
+				bounds.add(aligned);
+			}
+		}
+		bounds.add(size);
+		return bounds;
+	}
+
+	private static final class Shard {
+		final SymbolCounts counts;
+		final byte[] symbols;
+
+		Shard(SymbolCounts counts, byte[] symbols) {
+			this.counts = counts;
+			this.symbols = symbols;
+		}
+	}
+}
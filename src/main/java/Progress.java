@@ -0,0 +1,45 @@
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class Progress {
+	static final Progress NONE = new Progress(null);
+
+	private final Listener listener;
+	private final AtomicLong done = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private volatile boolean cancelled;
+
+	Progress(Listener listener) {
+		this.listener = listener;
+	}
+
+	void expect(long bytes) {
+		if (listener != null) {
+			total.addAndGet(bytes);
+		}
+	}
+
+	// Вызывается из циклов чтения после каждой порции; отменённая задача прерывается здесь
+	void advance(long bytes) throws InterruptedIOException {
+		if (cancelled) {
+			throw new InterruptedIOException("Analysis cancelled");
+		}
+		if (listener != null) {
+			listener.progress(done.addAndGet(bytes), total.get());
+		}
+	}
+
+	void cancel() {
+		if (this != NONE) {
+			cancelled = true;
+		}
+	}
+
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	interface Listener {
+		void progress(long done, long total);
+	}
+}
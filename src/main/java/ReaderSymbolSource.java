@@ -0,0 +1,54 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.LongSupplier;
+
+final class ReaderSymbolSource implements SymbolSource {
+	private final Reader reader;
+	private final Alphabet alphabet;
+	private final LongSupplier source;
+	private char[] chunk = new char[0];
+	private long position;
+
+	ReaderSymbolSource(Reader reader) {
+		this(reader, Alphabet.DEFAULT);
+	}
+
+	ReaderSymbolSource(Reader reader, Alphabet alphabet) {
+		this(reader, alphabet, null);
+	}
+
+	// source сообщает прогресс в единицах исходного файла (например, сжатые байты); null — прочитанные символы
+	ReaderSymbolSource(Reader reader, Alphabet alphabet, LongSupplier source) {
+		this.reader = reader;
+		this.alphabet = alphabet;
+		this.source = source;
+	}
+
+	@Override
+	public int read(byte[] symbols) throws IOException {
+		if (chunk.length < symbols.length) {
+			chunk = new char[symbols.length];
+		}
+		int read = reader.read(chunk, 0, symbols.length);
+		if (read == -1) {
+			return -1;
+		}
+		position += read;
+		return alphabet.normalize(chunk, 0, read, symbols, 0);
+	}
+
+	@Override
+	public Alphabet alphabet() {
+		return alphabet;
+	}
+
+	@Override
+	public long position() {
+		return source != null ? source.getAsLong() : position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
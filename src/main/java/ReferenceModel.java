@@ -0,0 +1,79 @@
+// Скомпилированная эталонная модель: плотная таблица −log2 P(b|a) по замкнутым биграммам эталона
+// со сглаживанием Лидстоуна P(b|a) = (c(a,b) + λ) / (c(a) + λ·n), так что у невиденных биграмм
+// стоимость конечна. Оценка документа — один проход с обращением к таблице на символ, без выделения памяти.
+public class ReferenceModel {
+	public static final double DEFAULT_SMOOTHING = 0.5;
+	private static final double LOG2 = Math.log(2.0);
+
+	private final Alphabet alphabet;
+	private final int size;
+	private final double[] cost;
+
+	private ReferenceModel(Alphabet alphabet, double[] cost) {
+		this.alphabet = alphabet;
+		this.size = alphabet.size();
+		this.cost = cost;
+	}
+
+	public static ReferenceModel compile(TextAnalyser reference) {
+		return compile(reference, DEFAULT_SMOOTHING);
+	}
+
+	public static ReferenceModel compile(TextAnalyser reference, double smoothing) {
+		if (!(smoothing > 0) || Double.isInfinite(smoothing)) {
+			throw new IllegalArgumentException("Smoothing must be finite and positive: " + smoothing);
+		}
+		Alphabet alphabet = reference.symbols();
+		int size = alphabet.size();
+		double[] cost = new double[size * size];
+		for (int a = 0; a < size; a++) {
+			double total = reference.letterCount(a) + smoothing * size;
+			for (int b = 0; b < size; b++) {
+				double p = (reference.bigramCount(a, b) + smoothing) / total;
+				cost[a * size + b] = -Math.log(p) / LOG2;
+			}
+		}
+		return new ReferenceModel(alphabet, cost);
+	}
+
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+
+	// Стоимость перехода a → b в битах
+	public double cost(int a, int b) {
+		return cost[a * size + b];
+	}
+
+	// Перекрёстная энтропия документа относительно модели, бит на переход; NaN, если переходов нет
+	public double crossEntropy(CharSequence text) {
+		double[] cost = this.cost;
+		double sum = 0;
+		long transitions = 0;
+		int previous = -1;
+		for (int i = 0, n = text.length(); i < n; i++) {
+			int symbol = alphabet.normalize(text.charAt(i));
+			if (symbol < 0) continue;
+			if (previous >= 0) {
+				sum += cost[previous * size + symbol];
+				transitions++;
+			}
+			previous = symbol;
+		}
+		return transitions > 0 ? sum / transitions : Double.NaN;
+	}
+
+	// То же для уже нормализованных индексов символов этого алфавита
+	public double crossEntropy(byte[] symbols, int from, int to) {
+		double[] cost = this.cost;
+		double sum = 0;
+		for (int i = from + 1; i < to; i++) {
+			sum += cost[symbols[i - 1] * size + symbols[i]];
+		}
+		return to - from > 1 ? sum / (to - from - 1) : Double.NaN;
+	}
+
+	double[] costs() {
+		return cost;
+	}
+}
@@ -0,0 +1,85 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Записи приходят из нескольких потоков; каждая пишется целиком и сразу сбрасывается на диск
+abstract class ResultWriter implements Closeable {
+	protected final Writer out;
+
+	protected ResultWriter(Writer out) {
+		this.out = out;
+	}
+
+	static ResultWriter open(Path path) throws IOException {
+		String name = path.getFileName().toString().toLowerCase();
+		BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+		if (name.endsWith(".json")) {
+			return new JsonResultWriter(writer);
+		}
+		if (name.endsWith(".csv")) {
+			return new CsvResultWriter(writer);
+		}
+		writer.close();
+		throw new IllegalArgumentException("Unsupported output format: " + path);
+	}
+
+	synchronized void writeText(Path file, TextAnalyser analyser, long millis) throws IOException {
+		Record record = new Record("text", file, null, millis);
+		record.length = analyser.getLength();
+		record.defaultEntropy = analyser.getDefaultEntropy();
+		record.markovEntropy = analyser.getMarkovEntropy();
+		write(record);
+	}
+
+	synchronized void writePair(Path first, Path second, PairedTextAnalyser pairedAB, PairedTextAnalyser pairedBA,
+								long millis) throws IOException {
+		Record record = new Record("pair", first, second, millis);
+		record.conditionalEntropyAB = pairedAB.getConditionalEntropy();
+		record.conditionalEntropyBA = pairedBA.getConditionalEntropy();
+		record.jointEntropy = pairedAB.getJointEntropy();
+		write(record);
+	}
+
+	synchronized void writeError(Path first, Path second, Exception error) throws IOException {
+		Record record = new Record(second == null ? "text" : "pair", first, second, 0);
+		record.error = String.valueOf(error.getMessage() != null ? error.getMessage() : error);
+		write(record);
+	}
+
+	private void write(Record record) throws IOException {
+		writeRecord(record);
+		out.flush();
+	}
+
+	protected abstract void writeRecord(Record record) throws IOException;
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	static final class Record {
+		final String type;
+		final Path file;
+		final Path secondFile;
+		final long millis;
+		Long length;
+		Double defaultEntropy;
+		Double markovEntropy;
+		Double conditionalEntropyAB;
+		Double conditionalEntropyBA;
+		Double jointEntropy;
+		String error;
+
+		Record(String type, Path file, Path secondFile, long millis) {
+			this.type = type;
+			this.file = file;
+			this.secondFile = secondFile;
+			this.millis = millis;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+// Однобайтовая кодировка: таблица из 256 элементов сразу переводит байт в индекс символа алфавита
+// (или −1), так что символы char не создаются вовсе
+final class SingleByteSource implements SymbolSource {
+	private final MappedWindows windows;
+	private final Alphabet alphabet;
+	private final byte[] table;
+
+	SingleByteSource(Path path, Alphabet alphabet, byte[] table) throws IOException {
+		this.windows = new MappedWindows(path);
+		this.alphabet = alphabet;
+		this.table = table;
+	}
+
+	@Override
+	public int read(byte[] symbols) throws IOException {
+		MappedByteBuffer window = windows.window();
+		if (window == null || !window.hasRemaining()) {
+			if (!windows.next()) {
+				return -1;
+			}
+			window = windows.window();
+		}
+		byte[] table = this.table;
+		int position = window.position();
+		int stop = Math.min(window.limit(), position + symbols.length);
+		int count = 0;
+		for (int i = position; i < stop; i++) {
+			byte symbol = table[window.get(i) & 0xFF];
+			if (symbol >= 0) {
+				symbols[count++] = symbol;
+			}
+		}
+		window.position(stop);
+		return count;
+	}
+
+	@Override
+	public Alphabet alphabet() {
+		return alphabet;
+	}
+
+	@Override
+	public long position() {
+		return windows.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		windows.close();
+	}
+}
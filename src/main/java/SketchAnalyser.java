@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+// Приближённая энтропия марковской модели порядка k в фиксированной памяти. Первый проход
+// заносит (k+1)-граммы и их k-контексты в два Count-Min sketch, второй проход по тем же файлам
+// суммирует -log2(ĉ(gram)/ĉ(context)) по позициям текста. Каждый файл замыкается в кольцо,
+// как в MarkovAnalyser, поэтому при точных счётчиках результат совпадает с getEntropy(k).
+//
+// Оценки счётчиков не меньше истинных и с вероятностью 1 - e^-depth каждая завышена не больше
+// чем на e/width · N. Если так выполнено для всех запрошенных ключей, истинная энтропия лежит
+// в [getLowerBound(), getUpperBound()].
+public class SketchAnalyser {
+	private static final int CHUNK_SIZE = 1 << 16;
+	private final int order;
+	private final long length;
+	private final double entropy;
+	private final double lowerBound;
+	private final double upperBound;
+	private final long memoryBytes;
+
+	private SketchAnalyser(int order, Sum sum, long memoryBytes) {
+		this.order = order;
+		this.length = sum.positions;
+		this.entropy = sum.positions > 0 ? sum.entropy / sum.positions : 0;
+		this.lowerBound = sum.positions > 0 ? sum.lower / sum.positions : 0;
+		this.upperBound = sum.positions > 0 ? sum.upper / sum.positions : 0;
+		this.memoryBytes = memoryBytes;
+	}
+
+	public static SketchAnalyser from(Path path, int order, int width, int depth) throws IOException {
+		return from(List.of(path), order, width, depth, 1);
+	}
+
+	// Файлы делятся между parallelism потоками; у каждого потока своя пара sketch,
+	// поэтому памяти нужно parallelism · 2 · depth · width · 8 байт
+	public static SketchAnalyser from(List<Path> files, int order, int width, int depth, int parallelism)
+			throws IOException {
+		int size = Alphabet.DEFAULT.size();
+		if (order < 0 || order > MarkovAnalyser.maxOrder()) {
+			throw new IllegalArgumentException("Order must be within 0.." + MarkovAnalyser.maxOrder() + ": " + order);
+		}
+		List<List<Path>> groups = new ArrayList<>();
+		for (int i = 0; i < Math.min(parallelism, files.size()); i++) {
+			groups.add(new ArrayList<>());
+		}
+		for (int i = 0; i < files.size(); i++) {
+			groups.get(i % groups.size()).add(files.get(i));
+		}
+
+		List<Callable<CountMinSketch[]>> counting = new ArrayList<>();
+		for (List<Path> group : groups) {
+			counting.add(() -> {
+				CountMinSketch grams = new CountMinSketch(width, depth, true);
+				CountMinSketch contexts = new CountMinSketch(width, depth, true);
+				for (Path file : group) {
+					forEachGram(file, order, size, gram -> {
+						grams.add(gram);
+						contexts.add(gram / size);
+					});
+				}
+				return new CountMinSketch[]{grams, contexts};
+			});
+		}
+		CountMinSketch grams = null;
+		CountMinSketch contexts = null;
+		for (CountMinSketch[] part : Parallel.invokeAll(counting, groups.size())) {
+			if (grams == null) {
+				grams = part[0];
+				contexts = part[1];
+			} else {
+				grams.merge(part[0]);
+				contexts.merge(part[1]);
+			}
+		}
+		if (grams == null) {
+			return new SketchAnalyser(order, new Sum(), 0);
+		}
+
+		CountMinSketch gramCounts = grams;
+		CountMinSketch contextCounts = contexts;
+		List<Callable<Sum>> scoring = new ArrayList<>();
+		for (List<Path> group : groups) {
+			scoring.add(() -> {
+				Sum sum = new Sum();
+				for (Path file : group) {
+					forEachGram(file, order, size, gram -> sum.add(gramCounts, contextCounts, gram, gram / size));
+				}
+				return sum;
+			});
+		}
+		Sum total = new Sum();
+		for (Sum part : Parallel.invokeAll(scoring, groups.size())) {
+			total.merge(part);
+		}
+		return new SketchAnalyser(order, total, groups.size() * (grams.bytes() + contexts.bytes()));
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public double getEntropy() {
+		return entropy;
+	}
+
+	public double getLowerBound() {
+		return lowerBound;
+	}
+
+	public double getUpperBound() {
+		return upperBound;
+	}
+
+	public long getMemoryBytes() {
+		return memoryBytes;
+	}
+
+	// Перебирает упакованные (k+1)-граммы файла в том же порядке, что и MarkovAnalyser, включая замыкание кольца
+	private static void forEachGram(Path file, int order, int size, GramSink sink) throws IOException {
+		long window = 1;
+		for (int i = 0; i < order; i++) {
+			window *= size;
+		}
+		byte[] head = new byte[order];
+		byte[] symbols = new byte[CHUNK_SIZE];
+		long roll = 0;
+		long length = 0;
+		try (SymbolSource source = new MappedUtf8Source(file)) {
+			int count;
+			while ((count = source.read(symbols)) != -1) {
+				for (int i = 0; i < count; i++) {
+					int symbol = symbols[i];
+					if (length < order) {
+						head[(int) length] = (byte) symbol;
+					}
+					roll = (roll % window) * size + symbol;
+					if (length >= order) {
+						sink.accept(roll);
+					}
+					length++;
+				}
+			}
+		}
+		if (length == 0) return;
+		int headLength = (int) Math.min(length, order);
+		for (int j = 0; j < order; j++) {
+			roll = (roll % window) * size + head[j % headLength];
+			if (length + j >= order) {
+				sink.accept(roll);
+			}
+		}
+	}
+
+	private interface GramSink {
+		void accept(long gram);
+	}
+
+	private static final class Sum {
+		private static final double LOG2 = Math.log(2.0);
+		long positions;
+		double entropy;
+		double lower;
+		double upper;
+
+		void add(CountMinSketch grams, CountMinSketch contexts, long gram, long context) {
+			double gramCount = grams.estimate(gram);
+			double contextCount = contexts.estimate(context);
+			// Истинные счётчики лежат в [max(1, ĉ - εN), ĉ]; граммы одного контекста не больше контекста
+			double minGram = Math.max(1, gramCount - grams.error());
+			double minContext = Math.max(minGram, contextCount - contexts.error());
+			entropy -= Math.log(Math.min(1, gramCount / contextCount)) / LOG2;
+			lower -= Math.log(Math.min(1, gramCount / minContext)) / LOG2;
+			upper -= Math.log(minGram / contextCount) / LOG2;
+			positions++;
+		}
+
+		void merge(Sum other) {
+			positions += other.positions;
+			entropy += other.entropy;
+			lower += other.lower;
+			upper += other.upper;
+		}
+	}
+}
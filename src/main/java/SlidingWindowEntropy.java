@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Энтропия по последним window символам потока. Счётчики униграмм и биграмм окна и суммы c·log2(c)
+// обновляются за O(1) на каждый входящий и выходящий символ. Внутри окна текст не замыкается
+// в кольцо: биграмм на одну меньше, чем символов.
+public class SlidingWindowEntropy {
+	private static final int CHUNK_SIZE = 1 << 16;
+	private final int window;
+	private final int size;
+	private final byte[] ring;
+	private final int[] letters;
+	private final int[] bigrams;
+	private final int[] prefixes;
+	// cLogC[c] = c·log2(c)
+	private final double[] cLogC;
+	private final long resyncInterval;
+	private int oldest;
+	private int free;
+	private int count;
+	private int newest = -1;
+	private double letterSum;
+	private double bigramSum;
+	private double prefixSum;
+	private long pushed;
+
+	public SlidingWindowEntropy(int window) {
+		if (window < 2) {
+			throw new IllegalArgumentException("window must be at least 2: " + window);
+		}
+		this.window = window;
+		this.size = Alphabet.DEFAULT.size();
+		this.ring = new byte[window];
+		this.letters = new int[size];
+		this.bigrams = new int[size * size];
+		this.prefixes = new int[size];
+		this.cLogC = new double[window + 1];
+		for (int c = 1; c <= window; c++) {
+			cLogC[c] = c * Math.log(c) / Math.log(2.0);
+		}
+		// Полный пересчёт сумм убирает накопленную ошибку округления и стоит O(1) в среднем на символ
+		this.resyncInterval = Math.max(window, (long) size * size);
+	}
+
+	// Символы вне алфавита пропускаются, как при нормализации текста
+	public void add(char c) {
+		int symbol = Alphabet.DEFAULT.normalize(c);
+		if (symbol >= 0) {
+			push(symbol);
+		}
+	}
+
+	void push(int symbol) {
+		if (count == window) {
+			int removed = ring[oldest];
+			oldest = oldest + 1 == window ? 0 : oldest + 1;
+			letterSum += change(letters, removed, -1);
+			bigramSum += change(bigrams, removed * size + ring[oldest], -1);
+			prefixSum += change(prefixes, removed, -1);
+			count--;
+		}
+		ring[free] = (byte) symbol;
+		free = free + 1 == window ? 0 : free + 1;
+		letterSum += change(letters, symbol, 1);
+		if (count > 0) {
+			bigramSum += change(bigrams, newest * size + symbol, 1);
+			prefixSum += change(prefixes, newest, 1);
+		}
+		newest = symbol;
+		count++;
+		if (++pushed == resyncInterval) {
+			pushed = 0;
+			resync();
+		}
+	}
+
+	public boolean isFull() {
+		return count == window;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public double getDefaultEntropy() {
+		if (count == 0) return 0;
+		return Math.max(0, Math.log(count) / Math.log(2.0) - letterSum / count);
+	}
+
+	public double getMarkovEntropy() {
+		if (count < 2) return 0;
+		return Math.max(0, (prefixSum - bigramSum) / (count - 1));
+	}
+
+	// Проходит файл один раз и сообщает энтропии окна через каждые step символов, когда окно заполнено
+	public static void series(Path path, int window, int step, Sink sink) throws IOException {
+		if (step < 1) {
+			throw new IllegalArgumentException("step must be positive: " + step);
+		}
+		SlidingWindowEntropy entropy = new SlidingWindowEntropy(window);
+		byte[] symbols = new byte[CHUNK_SIZE];
+		long position = 0;
+		try (SymbolSource source = new MappedUtf8Source(path)) {
+			int read;
+			while ((read = source.read(symbols)) != -1) {
+				for (int i = 0; i < read; i++) {
+					entropy.push(symbols[i]);
+					position++;
+					if (entropy.isFull() && (position - window) % step == 0) {
+						sink.accept(position, entropy.getDefaultEntropy(), entropy.getMarkovEntropy());
+					}
+				}
+			}
+		}
+	}
+
+	private double change(int[] counts, int index, int delta) {
+		int before = counts[index];
+		counts[index] = before + delta;
+		return cLogC[before + delta] - cLogC[before];
+	}
+
+	private void resync() {
+		letterSum = sum(letters);
+		bigramSum = sum(bigrams);
+		prefixSum = sum(prefixes);
+	}
+
+	private double sum(int[] counts) {
+		double sum = 0;
+		for (int c : counts) {
+			sum += cLogC[c];
+		}
+		return sum;
+	}
+
+	public interface Sink {
+		// position — число символов алфавита, прочитанных к концу окна
+		void accept(long position, double entropy, double markovEntropy);
+	}
+}
@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Сохранённый результат анализа без исходного текста. Счётчики хранятся открытыми (без замыкающей
+// биграммы), поэтому merge() даёт ровно счётчики склеенного текста.
+//
+// Формат (big-endian):
+//   int    magic "ENTS"
+//   short  версия
+//   short  n — размер алфавита, затем n символов UTF-16
+//   long   длина, int первый символ, int последний символ (-1 для пустого текста)
+//   double энтропия, double марковская энтропия
+//   short  длина хеша, затем хеш источника в UTF-8
+//   long[n] униграммы
+//   int    число ненулевых биграмм, затем пары (int индекс a·n+b, long счётчик)
+public final class Snapshot {
+	static final int MAGIC = 0x454E5453;
+	static final short VERSION = 1;
+
+	private final SymbolCounts counts;
+	private final String hash;
+	private final double defaultEntropy;
+	private final double markovEntropy;
+
+	private Snapshot(SymbolCounts counts, String hash, double defaultEntropy, double markovEntropy) {
+		this.counts = counts;
+		this.hash = hash;
+		this.defaultEntropy = defaultEntropy;
+		this.markovEntropy = markovEntropy;
+	}
+
+	public static Snapshot of(TextAnalyser analyser, String hash) {
+		return new Snapshot(analyser.counts(), hash, analyser.getDefaultEntropy(), analyser.getMarkovEntropy());
+	}
+
+	public static Snapshot of(Path text) throws IOException {
+		return of(TextAnalyser.from(text), ContentHash.of(text));
+	}
+
+	// Снимок склеенного текста this + next; хеш составной и зависит от порядка
+	public Snapshot merge(Snapshot next) {
+		SymbolCounts merged = counts.copy();
+		merged.merge(next.counts);
+		TextAnalyser analyser = new TextAnalyser(merged.copy(), null);
+		return new Snapshot(merged, ContentHash.of(hash + "+" + next.hash),
+				analyser.getDefaultEntropy(), analyser.getMarkovEntropy());
+	}
+
+	public TextAnalyser toAnalyser() {
+		return new TextAnalyser(counts.copy(), null);
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	public long getLength() {
+		return counts.length();
+	}
+
+	public double getDefaultEntropy() {
+		return defaultEntropy;
+	}
+
+	public double getMarkovEntropy() {
+		return markovEntropy;
+	}
+
+	public Alphabet getAlphabet() {
+		return counts.alphabet();
+	}
+
+	public void write(Path path) throws IOException {
+		Alphabet alphabet = counts.alphabet();
+		int size = alphabet.size();
+		long[] bigrams = counts.bigrams();
+		int nonZero = 0;
+		for (long count : bigrams) {
+			if (count != 0) nonZero++;
+		}
+		byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 2 + 2 + size * 2 + 8 + 4 + 4 + 8 + 8 + 2 + hashBytes.length
+				+ size * 8 + 4 + nonZero * 12);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) size);
+		for (int i = 0; i < size; i++) {
+			buffer.putChar(alphabet.symbol(i));
+		}
+		buffer.putLong(counts.length());
+		buffer.putInt(counts.first());
+		buffer.putInt(counts.last());
+		buffer.putDouble(defaultEntropy);
+		buffer.putDouble(markovEntropy);
+		buffer.putShort((short) hashBytes.length);
+		buffer.put(hashBytes);
+		for (long count : counts.unigrams()) {
+			buffer.putLong(count);
+		}
+		buffer.putInt(nonZero);
+		for (int i = 0; i < bigrams.length; i++) {
+			if (bigrams[i] != 0) {
+				buffer.putInt(i);
+				buffer.putLong(bigrams[i]);
+			}
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	public static Snapshot read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				return read(buffer);
+			} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+					| NegativeArraySizeException e) {
+				throw new IOException("Corrupted snapshot: " + path, e);
+			}
+		}
+	}
+
+	private static Snapshot read(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < 6 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a snapshot");
+		}
+		short version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		int size = Short.toUnsignedInt(buffer.getShort());
+		if (size < 1 || size > Alphabet.MAX_SIZE) {
+			throw new IOException("Corrupted snapshot: bad alphabet size " + size);
+		}
+		char[] symbols = new char[size];
+		for (int i = 0; i < size; i++) {
+			symbols[i] = buffer.getChar();
+		}
+		String definition = new String(symbols);
+		Alphabet alphabet = definition.equals(Alphabet.DEFAULT.symbols()) ? Alphabet.DEFAULT : new Alphabet(definition);
+		long length = buffer.getLong();
+		int first = buffer.getInt();
+		int last = buffer.getInt();
+		double defaultEntropy = buffer.getDouble();
+		double markovEntropy = buffer.getDouble();
+		byte[] hashBytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+		buffer.get(hashBytes);
+		long[] unigrams = new long[size];
+		for (int i = 0; i < size; i++) {
+			unigrams[i] = buffer.getLong();
+		}
+		long[] bigrams = new long[size * size];
+		int nonZero = buffer.getInt();
+		if (nonZero < 0 || nonZero > bigrams.length) {
+			throw new IOException("Corrupted snapshot: bad bigram count " + nonZero);
+		}
+		for (int i = 0; i < nonZero; i++) {
+			int index = buffer.getInt();
+			if (index < 0 || index >= bigrams.length) {
+				throw new IOException("Corrupted snapshot: bad bigram index " + index);
+			}
+			bigrams[index] = buffer.getLong();
+		}
+		if (length > 0 && (first < 0 || first >= size || last < 0 || last >= size)) {
+			throw new IOException("Corrupted snapshot: bad boundary symbols");
+		}
+		return new Snapshot(new SymbolCounts(alphabet, unigrams, bigrams, length, first, last),
+				new String(hashBytes, StandardCharsets.UTF_8), defaultEntropy, markovEntropy);
+	}
+}
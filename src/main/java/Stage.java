@@ -0,0 +1,82 @@
+import jdk.jfr.EventType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+// Замер одного этапа: try (Stage stage = Stage.start("normalize", text.length())) { ... }.
+// Пишет StageEvent, если JFR записывает это событие, и данные в Metrics, если они включены.
+// Когда выключено и то и другое, start() возвращает общий пустой экземпляр.
+final class Stage implements AutoCloseable {
+	private static final Stage NONE = new Stage(null, null, 0);
+	// Включено ли событие в какой-либо записи JFR, без создания экземпляра события
+	private static final EventType EVENT_TYPE = EventType.getEventType(StageEvent.class);
+
+	private final String name;
+	private final StageEvent event;
+	private final long allocatedBefore;
+	private final long started;
+	private long inputSize;
+
+	private Stage(String name, StageEvent event, long inputSize) {
+		this.name = name;
+		this.event = event;
+		this.inputSize = inputSize;
+		this.allocatedBefore = name != null ? Allocation.current() : 0;
+		this.started = name != null ? System.nanoTime() : 0;
+	}
+
+	static Stage start(String name, long inputSize) {
+		boolean recording = EVENT_TYPE.isEnabled();
+		if (!recording && !Metrics.isEnabled()) {
+			return NONE;
+		}
+		StageEvent event = null;
+		if (recording) {
+			event = new StageEvent();
+			event.begin();
+		}
+		return new Stage(name, event, inputSize);
+	}
+
+	// Для этапов, размер входа которых известен только в конце
+	void input(long size) {
+		inputSize = size;
+	}
+
+	@Override
+	public void close() {
+		if (this == NONE) return;
+		long nanos = System.nanoTime() - started;
+		long allocated = Allocation.current() - allocatedBefore;
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.stage = name;
+				event.inputSize = inputSize;
+				event.allocated = allocated;
+				event.commit();
+			}
+		}
+		if (Metrics.isEnabled()) {
+			Metrics.record(name, nanos, inputSize, allocated);
+		}
+	}
+
+	// Загружается только при первом включённом замере
+	private static final class Allocation {
+		private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+		private static com.sun.management.ThreadMXBean threads() {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+				return (com.sun.management.ThreadMXBean) bean;
+			}
+			return null;
+		}
+
+		static long current() {
+			return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+		}
+	}
+}
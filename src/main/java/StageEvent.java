@@ -0,0 +1,27 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Событие Flight Recorder для одного этапа анализа; длительность записывает сам JFR
+@Name("entropy.Stage")
+@Label("Analysis Stage")
+@Category("Entropy")
+@Description("Один этап анализа текста")
+@StackTrace(false)
+final class StageEvent extends Event {
+	@Label("Stage")
+	String stage;
+
+	@Label("Input Size")
+	@Description("Размер входа этапа: байты файла или символы текста")
+	long inputSize;
+
+	@Label("Allocated")
+	@Description("Память, выделенная вызывающим потоком за время этапа")
+	@DataAmount
+	long allocated;
+}
@@ -0,0 +1,48 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Отдельные этапы анализа для бенчмарков из src/jmh. JMH требует именованный пакет, из которого
+// классы безымянного пакета видны только через MethodHandle, поэтому бенчмарки находят эти
+// публичные методы по имени и сигнатуре, а StageHooksTest проверяет их в обычной сборке.
+// Счётчики передаются как Object: SymbolCounts за пределами пакета не виден.
+public final class StageHooks {
+	private StageHooks() {
+	}
+
+	public static byte[] normalize(String text) {
+		return TextAnalyser.normalizeText(text);
+	}
+
+	public static Object count(byte[] symbols) {
+		SymbolCounts counts = new SymbolCounts(Alphabet.DEFAULT);
+		counts.add(symbols, 0, symbols.length);
+		return counts;
+	}
+
+	// Замыкает биграммы и считает обе энтропии по готовым счётчикам
+	public static TextAnalyser analyser(Object counts, byte[] symbols) {
+		return new TextAnalyser((SymbolCounts) counts, symbols);
+	}
+
+	// Без кеша, который держат getAlphabet() и getBigram()
+	public static Map<Character, Integer> letterMap(TextAnalyser analyser) {
+		return analyser.setLetterMap();
+	}
+
+	public static Map<String, Integer> bigramMap(TextAnalyser analyser) {
+		return analyser.createBigramMap();
+	}
+
+	public static TextAnalyser analyse(String text) {
+		return new TextAnalyser(text);
+	}
+
+	public static TextAnalyser analyse(Path file) throws IOException {
+		return TextAnalyser.from(file);
+	}
+
+	public static PairedTextAnalyser paired(TextAnalyser first, TextAnalyser second) {
+		return new PairedTextAnalyser(first, second);
+	}
+}
@@ -0,0 +1,57 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+
+// Однобайтовая кодировка из произвольного потока (например, распаковываемого): байты читаются порциями
+// в переиспользуемый буфер и сразу переводятся таблицей в индексы символов алфавита
+final class StreamSingleByteSource implements SymbolSource {
+	private final InputStream in;
+	private final Alphabet alphabet;
+	private final byte[] table;
+	private final LongSupplier position;
+	private final byte[] buffer;
+	private long consumed;
+
+	// position — как в StreamUtf8Source: null означает прочитанные байты потока
+	StreamSingleByteSource(InputStream in, Alphabet alphabet, byte[] table, ByteBuffer buffer, LongSupplier position) {
+		this.in = in;
+		this.alphabet = alphabet;
+		this.table = table;
+		this.buffer = buffer.array();
+		this.position = position;
+	}
+
+	@Override
+	public int read(byte[] symbols) throws IOException {
+		int read = in.read(buffer, 0, Math.min(buffer.length, symbols.length));
+		if (read == -1) {
+			return -1;
+		}
+		consumed += read;
+		byte[] table = this.table;
+		int count = 0;
+		for (int i = 0; i < read; i++) {
+			byte symbol = table[buffer[i] & 0xFF];
+			if (symbol >= 0) {
+				symbols[count++] = symbol;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public Alphabet alphabet() {
+		return alphabet;
+	}
+
+	@Override
+	public long position() {
+		return position != null ? position.getAsLong() : consumed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
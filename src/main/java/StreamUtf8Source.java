@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.util.function.LongSupplier;
+
+// UTF-8 из произвольного потока (например, распаковываемого) за один проход. Байты читаются в один
+// переиспользуемый буфер; незавершённая последовательность в конце порции переносится в начало буфера
+// и дочитывается вместе со следующей порцией.
+final class StreamUtf8Source implements SymbolSource {
+	static final int BUFFER_SIZE = 1 << 20;
+	private final InputStream in;
+	private final Alphabet alphabet;
+	private final LongSupplier position;
+	private final ByteBuffer buffer;
+	private long consumed;
+	private boolean eof;
+
+	// position сообщает прогресс в единицах исходного файла, например сжатые байты; null — прочитанные байты потока
+	StreamUtf8Source(InputStream in, Alphabet alphabet, ByteBuffer buffer, LongSupplier position) {
+		this.in = in;
+		this.alphabet = alphabet;
+		this.buffer = buffer;
+		this.position = position;
+		buffer.clear().flip();
+	}
+
+	@Override
+	public int read(byte[] symbols) throws IOException {
+		while (true) {
+			if (buffer.hasRemaining()) {
+				int before = buffer.position();
+				int count = Utf8Decoder.decode(buffer, symbols, alphabet);
+				if (buffer.position() > before) {
+					return count;
+				}
+			}
+			if (eof) {
+				if (buffer.hasRemaining()) {
+					// Поток обрывается посреди многобайтовой последовательности
+					throw new MalformedInputException(buffer.remaining());
+				}
+				return -1;
+			}
+			fill();
+		}
+	}
+
+	private void fill() throws IOException {
+		buffer.compact();
+		int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		if (read == -1) {
+			eof = true;
+		} else {
+			buffer.position(buffer.position() + read);
+			consumed += read;
+		}
+		buffer.flip();
+	}
+
+	@Override
+	public Alphabet alphabet() {
+		return alphabet;
+	}
+
+	@Override
+	public long position() {
+		return position != null ? position.getAsLong() : consumed - buffer.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,116 @@
+final class SymbolCounts {
+	private final Alphabet alphabet;
+	private final int size;
+	private final long[] unigrams;
+	// Только соседние пары; замыкающая биграмма (last, first) добавляется в closedBigrams()
+	private final long[] bigrams;
+	private long length;
+	private int first = -1;
+	private int last = -1;
+
+	SymbolCounts(Alphabet alphabet) {
+		this.alphabet = alphabet;
+		this.size = alphabet.size();
+		this.unigrams = new long[size];
+		this.bigrams = new long[size * size];
+	}
+
+	// Счётчики, восстановленные из сохранённого состояния; массивы не копируются
+	SymbolCounts(Alphabet alphabet, long[] unigrams, long[] bigrams, long length, int first, int last) {
+		this.alphabet = alphabet;
+		this.size = alphabet.size();
+		if (unigrams.length != size || bigrams.length != size * size) {
+			throw new IllegalArgumentException("Counts do not match alphabet of " + size + " symbols");
+		}
+		this.unigrams = unigrams;
+		this.bigrams = bigrams;
+		this.length = length;
+		this.first = first;
+		this.last = last;
+	}
+
+	SymbolCounts copy() {
+		return new SymbolCounts(alphabet, unigrams.clone(), bigrams.clone(), length, first, last);
+	}
+
+	void add(int symbol) {
+		unigrams[symbol]++;
+		if (last >= 0) {
+			bigrams[last * size + symbol]++;
+		} else {
+			first = symbol;
+		}
+		last = symbol;
+		length++;
+	}
+
+	void add(byte[] symbols, int from, int to) {
+		if (from >= to) return;
+		int previous = last;
+		if (previous < 0) {
+			first = symbols[from];
+		}
+		for (int i = from; i < to; i++) {
+			int symbol = symbols[i];
+			unigrams[symbol]++;
+			if (previous >= 0) {
+				bigrams[previous * size + symbol]++;
+			}
+			previous = symbol;
+		}
+		last = previous;
+		length += to - from;
+	}
+
+	void merge(SymbolCounts next) {
+		if (!next.alphabet.equals(alphabet)) {
+			throw new IllegalArgumentException("Alphabets differ");
+		}
+		if (next.length == 0) return;
+		for (int i = 0; i < size; i++) {
+			unigrams[i] += next.unigrams[i];
+		}
+		for (int i = 0; i < bigrams.length; i++) {
+			bigrams[i] += next.bigrams[i];
+		}
+		if (last >= 0) {
+			bigrams[last * size + next.first]++;
+		} else {
+			first = next.first;
+		}
+		last = next.last;
+		length += next.length;
+	}
+
+	long[] closedBigrams() {
+		long[] closed = bigrams.clone();
+		if (length > 0) {
+			closed[last * size + first]++;
+		}
+		return closed;
+	}
+
+	long[] bigrams() {
+		return bigrams;
+	}
+
+	Alphabet alphabet() {
+		return alphabet;
+	}
+
+	long[] unigrams() {
+		return unigrams;
+	}
+
+	long length() {
+		return length;
+	}
+
+	int first() {
+		return first;
+	}
+
+	int last() {
+		return last;
+	}
+}
@@ -0,0 +1,12 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+interface SymbolSource extends Closeable {
+	// Заполняет symbols индексами символов алфавита, возвращает их число или -1 в конце ввода
+	int read(byte[] symbols) throws IOException;
+
+	Alphabet alphabet();
+
+	// Сколько единиц входа (байтов или символов) уже прочитано
+	long position();
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Анализ файла, который дописывается в конец. Между обновлениями хранятся открытые счётчики
+// и смещение в байтах после последней целой последовательности UTF-8, поэтому refresh() читает
+// только добавленные байты; замыкающая биграмма пересчитывается при построении результата.
+// Если файл стал короче или был заменён другим, анализ начинается заново.
+public class TailAnalyser implements AutoCloseable {
+	private static final int CHUNK_SIZE = 1 << 16;
+	private final Path path;
+	private final byte[] symbols = new byte[CHUNK_SIZE];
+	private SymbolCounts counts = new SymbolCounts(Alphabet.DEFAULT);
+	private long offset;
+	private Object fileKey;
+	private TextAnalyser current;
+	private volatile WatchService watcher;
+	private volatile boolean closed;
+
+	public TailAnalyser(Path path) {
+		this.path = path;
+	}
+
+	// Возвращает true, если с прошлого вызова результат изменился
+	public synchronized boolean refresh() throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		Object key = attributes.fileKey();
+		if (attributes.size() < offset || (fileKey != null && !Objects.equals(fileKey, key))) {
+			counts = new SymbolCounts(Alphabet.DEFAULT);
+			offset = 0;
+			current = null;
+		}
+		fileKey = key;
+		// Счётчики и смещение публикуются вместе только после успешного чтения: при ошибке следующий
+		// вызов начнёт с того же места и ничего не посчитает дважды
+		SymbolCounts next = counts.copy();
+		long read;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			 Stage stage = Stage.start("tail-read", 0)) {
+			// Последняя последовательность может ещё дописываться и будет прочитана при следующем обновлении
+			SymbolSource source = new MappedUtf8Source(channel, offset, channel.size(), next.alphabet(), true);
+			int count;
+			while ((count = source.read(symbols)) != -1) {
+				next.add(symbols, 0, count);
+			}
+			read = source.position();
+			stage.input(read);
+		}
+		if (read == 0 && current != null) {
+			return false;
+		}
+		counts = next;
+		offset += read;
+		current = new TextAnalyser(counts.copy(), null);
+		return true;
+	}
+
+	public synchronized TextAnalyser current() throws IOException {
+		if (current == null) {
+			refresh();
+		}
+		return current;
+	}
+
+	public synchronized long getOffset() {
+		return offset;
+	}
+
+	// Блокирует поток и сообщает о каждом изменении, пока не вызван close() или поток не прерван.
+	// События WatchService ускоряют реакцию; опрос раз в intervalMillis нужен там, где их нет.
+	public void follow(long intervalMillis, Listener listener) throws IOException, InterruptedException {
+		Path directory = path.toAbsolutePath().getParent();
+		try (WatchService service = directory.getFileSystem().newWatchService()) {
+			watcher = service;
+			directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			while (!closed) {
+				if (changed()) {
+					listener.updated(current(), getOffset());
+				}
+				WatchKey key = service.poll(intervalMillis, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					key.pollEvents();
+					key.reset();
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// close() из другого потока
+		} finally {
+			watcher = null;
+		}
+	}
+
+	// Файл может ещё не существовать или временно исчезнуть при ротации
+	private boolean changed() throws IOException {
+		try {
+			return refresh();
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		WatchService service = watcher;
+		if (service != null) {
+			service.close();
+		}
+	}
+
+	public interface Listener {
+		void updated(TextAnalyser analyser, long offset);
+	}
+}
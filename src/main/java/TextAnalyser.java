@@ -1,3 +1,9 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -7,12 +13,18 @@ import java.util.stream.Collectors;
 
 public class TextAnalyser {
 	protected static String alphabets = "абвгдежзийклмнопрстуфхцчшщъыьэюяabcdefghijklmnopqrstuvwxyz";
-	private final Map<Character, Integer> alphabet;
-	private final Map<String, Integer> bigram;
-	private final String normalized;
+	private static final int CHUNK_SIZE = 1 << 16;
+	private final Alphabet symbols;
+	private final long[] letters;
+	private final long[] bigrams;
+	private final byte[] normalized;
 	private final double defaultEntropy;
 	private final double markovEntropy;
-	private final int length;
+	private final long length;
+	private final int first;
+	private final int last;
+	private volatile Map<Character, Integer> alphabet;
+	private volatile Map<String, Integer> bigram;
 
 
 	public double getMarkovEntropy() {
@@ -24,33 +36,147 @@ public class TextAnalyser {
 	}
 
 	public String getNormalized() {
-		return normalized;
+		if (normalized == null) {
+			throw new IllegalStateException("Normalized text was not retained");
+		}
+		char[] chars = new char[normalized.length];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = symbols.symbol(normalized[i]);
+		}
+		return new String(chars);
+	}
+
+	public long getLength() {
+		return length;
 	}
 
 	public Map<String, Integer> getBigram() {
-		return bigram;
+		Map<String, Integer> view = bigram;
+		if (view == null) {
+			bigram = view = createBigramMap();
+		}
+		return view;
 	}
 
 	public Map<Character, Integer> getAlphabet() {
-		return alphabet;
+		Map<Character, Integer> view = alphabet;
+		if (view == null) {
+			alphabet = view = setLetterMap();
+		}
+		return view;
 	}
 
 	public TextAnalyser(String text) {
-		normalized = normalizeText(text);
-		length = normalized.length();
-		alphabet = setLetterMap(normalized);
-		bigram = createBigramMap(normalized);
-		defaultEntropy = defaultEntropy();
-		markovEntropy = markovEntropy();
+		this(text, Alphabet.DEFAULT);
+	}
+
+	public TextAnalyser(String text, Alphabet alphabet) {
+		this(normalizeText(text, alphabet), alphabet);
+	}
+
+	private TextAnalyser(byte[] normalized, Alphabet alphabet) {
+		this(countSymbols(normalized, alphabet), normalized);
+	}
+
+	@SuppressWarnings("try")
+	TextAnalyser(SymbolCounts counts, byte[] normalized) {
+		this.normalized = normalized;
+		symbols = counts.alphabet();
+		length = counts.length();
+		first = counts.first();
+		last = counts.last();
+		letters = counts.unigrams();
+		bigrams = counts.closedBigrams();
+		try (Stage stage = Stage.start("entropy", length)) {
+			defaultEntropy = defaultEntropy();
+			markovEntropy = markovEntropy();
+		}
+
+	}
+
+	public static TextAnalyser from(Reader reader) throws IOException {
+		return from(reader, false);
+	}
+
+	public static TextAnalyser from(Reader reader, boolean retainNormalized) throws IOException {
+		return from(reader, retainNormalized, Alphabet.DEFAULT);
+	}
+
+	public static TextAnalyser from(Reader reader, boolean retainNormalized, Alphabet alphabet) throws IOException {
+		return from(new ReaderSymbolSource(reader, alphabet), retainNormalized, Progress.NONE);
+	}
+
+	public static TextAnalyser from(Path path) throws IOException {
+		return from(path, false);
+	}
+
+	public static TextAnalyser from(Path path, boolean retainNormalized) throws IOException {
+		return from(path, retainNormalized, Alphabet.DEFAULT);
+	}
+
+	public static TextAnalyser from(Path path, boolean retainNormalized, Alphabet alphabet) throws IOException {
+		try (SymbolSource source = new MappedUtf8Source(path, alphabet)) {
+			return from(source, retainNormalized, Progress.NONE);
+		}
+	}
 
+	static TextAnalyser from(SymbolSource source, boolean retainNormalized, Progress progress) throws IOException {
+		SymbolCounts counts = new SymbolCounts(source.alphabet());
+		ByteArrayOutputStream retained = retainNormalized ? new ByteArrayOutputStream() : null;
+		try (Stage stage = Stage.start("read", 0)) {
+			byte[] symbols = new byte[CHUNK_SIZE];
+			long position = 0;
+			int count;
+			while ((count = source.read(symbols)) != -1) {
+				progress.advance(source.position() - position);
+				position = source.position();
+				counts.add(symbols, 0, count);
+				if (retained != null) {
+					retained.write(symbols, 0, count);
+				}
+			}
+			stage.input(position);
+		}
+		return new TextAnalyser(counts, retained != null ? retained.toByteArray() : null);
+	}
+
+	Alphabet symbols() {
+		return symbols;
+	}
+
+	long letterCount(int symbol) {
+		return letters[symbol];
+	}
+
+	byte[] normalizedSymbols() {
+		if (normalized == null) {
+			throw new IllegalStateException("Normalized text was not retained");
+		}
+		return normalized;
+	}
+
+	boolean retainsNormalized() {
+		return normalized != null;
+	}
+
+	// Открытые счётчики: без замыкающей биграммы (last, first), их можно объединять с другими
+	SymbolCounts counts() {
+		long[] open = bigrams.clone();
+		if (length > 0) {
+			open[last * symbols.size() + first]--;
+		}
+		return new SymbolCounts(symbols, letters.clone(), open, length, first, last);
+	}
+
+	long bigramCount(int a, int b) {
+		return bigrams[a * symbols.size() + b];
 	}
 
 	private double defaultEntropy() {
-		Map<Character, Integer> alb = alphabet;
 		double entropy = 0;
-		for(char c : alb.keySet()) {
-			if(alb.get(c) == 0) continue;
-			double p_i = (double) alb.get(c) / length;
+		for(long count : letters) {
+			if(count == 0) continue;
+			double p_i = (double) count / length;
 			double log2p = Math.log(1 / p_i) / Math.log(2.0);
 			entropy += p_i * log2p;
 		}
@@ -59,10 +185,15 @@ public class TextAnalyser {
 
 	private double markovEntropy() {
 		double entropy = 0;
-		for(String key : bigram.keySet()) {
-			double p_i = (double) bigram.get(key) / length;
-			double condProb = conditionalProbability(key);
-			if(condProb > 0) {
+		int size = symbols.size();
+		for(int a = 0; a < size; a++) {
+			if(letters[a] == 0) continue;
+			double p_A = (double) letters[a] / length;
+			for(int b = 0; b < size; b++) {
+				long countAB = bigrams[a * size + b];
+				if(countAB == 0) continue;
+				double p_i = (double) countAB / length;
+				double condProb = p_i / p_A;
 				double log2 = Math.log(1 / condProb)/ Math.log(2);
 				entropy += p_i * log2;
 			}
@@ -70,49 +201,77 @@ public class TextAnalyser {
 		return entropy;
 	}
 
-	private static String normalizeText(String text) {
-		StringBuilder result = new StringBuilder();
-		for(char c : text.toCharArray()) {
-			if(alphabets.contains(Character.toString(c).toLowerCase())) {
-				result.append(Character.toLowerCase(c));
-			}
+	static byte[] normalizeText(String text) {
+		return normalizeText(text, Alphabet.DEFAULT);
+	}
+
+	@SuppressWarnings("try")
+	private static byte[] normalizeText(String text, Alphabet alphabet) {
+		try (Stage stage = Stage.start("normalize", text.length())) {
+			byte[] result = new byte[text.length()];
+			int count = alphabet.normalize(text, 0, text.length(), result, 0);
+			return count == result.length ? result : Arrays.copyOf(result, count);
+		}
+	}
+
+	private static SymbolCounts countSymbols(byte[] normalized, Alphabet alphabet) {
+		SymbolCounts counts = new SymbolCounts(alphabet);
+		counts.add(normalized, 0, normalized.length);
+		return counts;
+	}
+
+	@SuppressWarnings("try")
+	Map<String, Integer> createBigramMap() {
+		try (Stage stage = Stage.start("bigram-map", length)) {
+			return bigramMap();
 		}
-		return result.toString();
 	}
 
-	private static Map<String, Integer> createBigramMap(String text) {
+	private Map<String, Integer> bigramMap() {
 		Map<String, Integer> bigramMap = new HashMap<>();
-		for(int i = 0; i <= text.length() - 1; i++) {
-			String bigram;
-			if(i == text.length() - 1) {
-				bigram = text.charAt(i) + "" + text.charAt(0);
-			} else {
-				bigram = text.substring(i, i + 2);
+		int size = symbols.size();
+		for(int a = 0; a < size; a++) {
+			for(int b = 0; b < size; b++) {
+				long count = bigrams[a * size + b];
+				if(count > 0) {
+					bigramMap.put(symbols.symbol(a) + "" + symbols.symbol(b), (int) count);
+				}
 			}
-			bigramMap.merge(bigram, 1, Integer::sum);
 		}
-		return bigramMap;
+		return Collections.unmodifiableMap(bigramMap);
 	}
 
-	private Map<Character, Integer> setLetterMap(String text) {
-		Map<Character, Integer> letterMap = setDefaultMap(text);
-		for(char c : text.toCharArray()) {
-			letterMap.merge(c, 1, Integer::sum);
+	@SuppressWarnings("try")
+	Map<Character, Integer> setLetterMap() {
+		try (Stage stage = Stage.start("alphabet-map", length)) {
+			return letterMap();
+		}
+	}
+
+	private Map<Character, Integer> letterMap() {
+		Map<Character, Integer> letterMap = setDefaultMap(first >= 0 ? symbols.symbol(first) : ' ');
+		for(int i = 0; i < letters.length; i++) {
+			if(letters[i] > 0) {
+				letterMap.put(symbols.symbol(i), (int) letters[i]);
+			}
 		}
-		return letterMap;
+		return Collections.unmodifiableMap(letterMap);
 	}
 
 	public double conditionalProbability(String bigram) {
-		Integer countAB = this.bigram.get(bigram);
-		if (countAB == null) return 0.0;
-		Integer countA = alphabet.get(bigram.charAt(0));
-		if (countA == null || countA == 0) return 0.0;
-		double p_AB = (double) this.bigram.get(bigram) / length;
-		double p_A = (double) alphabet.get(bigram.charAt(0)) / length;
+		int a = symbols.indexOf(bigram.charAt(0));
+		int b = symbols.indexOf(bigram.charAt(1));
+		if (a < 0 || b < 0) return 0.0;
+		long countAB = bigramCount(a, b);
+		if (countAB == 0) return 0.0;
+		long countA = letters[a];
+		if (countA == 0) return 0.0;
+		double p_AB = (double) countAB / length;
+		double p_A = (double) countA / length;
 		return p_AB / p_A;
 	}
 
-	private static Map<Character, Integer> setDefaultMap(String normalized)
+	private static Map<Character, Integer> setDefaultMap(char firstLetter)
 	{
 		Map<Character, Integer> defaultMap;
 		List<Character> englishLetters = List.of(
@@ -124,7 +283,7 @@ public class TextAnalyser {
 				'н', 'о', 'п', 'р', 'с', 'т', 'у', 'ф', 'х', 'ц', 'ч', 'ш', 'щ', 'ъ',
 				'ы', 'ь', 'э', 'ю', 'я'
 		);
-		if(String.valueOf(normalized.charAt(0)).matches("[а-яА-Я]"))
+		if(String.valueOf(firstLetter).matches("[а-яА-ЯёЁ]"))
 		{
 			defaultMap = russianLetters.stream().collect(Collectors.toMap(
 					letter -> letter,
@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+// Кодировка текстового файла. Сначала проверяется BOM, затем начало файла: корректный UTF-8 считается
+// UTF-8, иначе из CP1251 и KOI8-R выбирается та, в которой байты выше 0x7F дают более частые русские
+// буквы. Регистр не учитывается: в этих кодировках строчные и прописные лежат в переставленных
+// половинах, и текст заглавными в чужой кодировке выглядел бы строчным.
+public enum TextEncoding {
+	UTF_8(StandardCharsets.UTF_8),
+	UTF_16LE(StandardCharsets.UTF_16LE),
+	UTF_16BE(StandardCharsets.UTF_16BE),
+	WINDOWS_1251(Charset.forName("windows-1251")),
+	KOI8_R(Charset.forName("KOI8-R"));
+
+	static final int PREFIX_SIZE = 64 << 10;
+	// Русские буквы по убыванию частоты; вес буквы — её место с конца
+	private static final String FREQUENT = "оеаинтсрвлкмдпуяыьгзбчйхжшюцщэфъё";
+
+	private final Charset charset;
+
+	TextEncoding(Charset charset) {
+		this.charset = charset;
+	}
+
+	public Charset charset() {
+		return charset;
+	}
+
+	public boolean isSingleByte() {
+		return this == WINDOWS_1251 || this == KOI8_R;
+	}
+
+	public static TextAnalyser analyse(Path file, boolean retainNormalized) throws IOException {
+		return detect(file).analyse(file, retainNormalized, Alphabet.DEFAULT, Progress.NONE);
+	}
+
+	// Любой поддерживаемый файл: сжатый (.gz, .zip) или текст в одной из определяемых кодировок
+	public static TextAnalyser analyseFile(Path file, boolean retainNormalized) throws IOException {
+		return analyseFile(file, retainNormalized, Long.MAX_VALUE);
+	}
+
+	// Сжатый файл, распакованный текст которого больше maxBytes, — CompressedText.TooLargeException
+	static TextAnalyser analyseFile(Path file, boolean retainNormalized, long maxBytes) throws IOException {
+		if (CompressedText.isCompressed(file)) {
+			return CompressedText.analyse(file, retainNormalized, Alphabet.DEFAULT, Progress.NONE, maxBytes);
+		}
+		return analyse(file, retainNormalized);
+	}
+
+	TextAnalyser analyse(Path file, boolean retainNormalized, Alphabet alphabet, Progress progress)
+			throws IOException {
+		// Для UTF-16 источник считает прочитанные символы, а не байты
+		long size = Files.size(file);
+		progress.expect(this == UTF_16LE || this == UTF_16BE ? size / 2 : size);
+		try (SymbolSource source = open(file, alphabet)) {
+			return TextAnalyser.from(source, retainNormalized, progress);
+		}
+	}
+
+	public static TextEncoding detect(Path file) throws IOException {
+		byte[] prefix = new byte[PREFIX_SIZE];
+		int length;
+		try (InputStream in = Files.newInputStream(file)) {
+			length = readPrefix(in, prefix);
+		}
+		return detect(prefix, length);
+	}
+
+	// Читает начало потока до заполнения prefix или конца потока; возвращает число байт
+	static int readPrefix(InputStream in, byte[] prefix) throws IOException {
+		int length = 0;
+		int read;
+		while (length < prefix.length && (read = in.read(prefix, length, prefix.length - length)) != -1) {
+			length += read;
+		}
+		return length;
+	}
+
+	static TextEncoding detect(byte[] prefix, int length) {
+		if (length >= 3 && (prefix[0] & 0xFF) == 0xEF && (prefix[1] & 0xFF) == 0xBB && (prefix[2] & 0xFF) == 0xBF) {
+			return UTF_8;
+		}
+		if (length >= 2 && (prefix[0] & 0xFF) == 0xFF && (prefix[1] & 0xFF) == 0xFE) {
+			return UTF_16LE;
+		}
+		if (length >= 2 && (prefix[0] & 0xFF) == 0xFE && (prefix[1] & 0xFF) == 0xFF) {
+			return UTF_16BE;
+		}
+		if (isUtf8(prefix, length)) {
+			return UTF_8;
+		}
+		return score(WINDOWS_1251, prefix, length) >= score(KOI8_R, prefix, length) ? WINDOWS_1251 : KOI8_R;
+	}
+
+	// Незавершённая последовательность в самом конце префикса ошибкой не считается
+	private static boolean isUtf8(byte[] prefix, int length) {
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		CharBuffer chars = CharBuffer.allocate(length);
+		return !decoder.decode(ByteBuffer.wrap(prefix, 0, length), chars, false).isError();
+	}
+
+	private static int score(TextEncoding encoding, byte[] prefix, int length) {
+		char[] decoded = decodeTable(encoding.charset);
+		int score = 0;
+		for (int i = 0; i < length; i++) {
+			int b = prefix[i] & 0xFF;
+			if (b < 0x80) continue;
+			char c = Character.toLowerCase(decoded[b]);
+			int rank = FREQUENT.indexOf(c);
+			if (rank >= 0) {
+				score += FREQUENT.length() - rank;
+			} else if (!Character.isLetter(c)) {
+				score -= FREQUENT.length();
+			}
+		}
+		return score;
+	}
+
+	private static char[] decodeTable(Charset charset) {
+		byte[] bytes = new byte[256];
+		for (int b = 0; b < bytes.length; b++) {
+			bytes[b] = (byte) b;
+		}
+		return new String(bytes, charset).toCharArray();
+	}
+
+	// Таблица байт → индекс символа алфавита (−1 — не символ алфавита) для однобайтовых кодировок
+	byte[] symbolTable(Alphabet alphabet) {
+		char[] decoded = decodeTable(charset);
+		byte[] table = new byte[256];
+		for (int b = 0; b < table.length; b++) {
+			table[b] = (byte) alphabet.normalize(decoded[b]);
+		}
+		return table;
+	}
+
+	// Поток без перемотки, например распаковываемый; buffer и position — как у StreamUtf8Source
+	SymbolSource open(InputStream in, Alphabet alphabet, ByteBuffer buffer, LongSupplier position) {
+		if (this == UTF_8) {
+			return new StreamUtf8Source(in, alphabet, buffer, position);
+		}
+		if (isSingleByte()) {
+			return new StreamSingleByteSource(in, alphabet, symbolTable(alphabet), buffer, position);
+		}
+		return new ReaderSymbolSource(new InputStreamReader(in, charset), alphabet, position);
+	}
+
+	SymbolSource open(Path file, Alphabet alphabet) throws IOException {
+		if (this == UTF_8) {
+			return new MappedUtf8Source(file, alphabet);
+		}
+		if (isSingleByte()) {
+			return new SingleByteSource(file, alphabet, symbolTable(alphabet));
+		}
+		return new ReaderSymbolSource(new InputStreamReader(Files.newInputStream(file), charset), alphabet);
+	}
+}
@@ -0,0 +1,80 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+
+final class Utf8Decoder {
+	private Utf8Decoder() {
+	}
+
+	// Декодирует целые последовательности из src; незавершённая последовательность в конце остаётся в src
+	static int decode(ByteBuffer src, byte[] symbols, Alphabet alphabet) throws MalformedInputException {
+		int position = src.position();
+		int limit = src.limit();
+		int stop = Math.min(limit, position + symbols.length);
+		int count = 0;
+		while (position < stop) {
+			int b = src.get(position);
+			if (b >= 0) {
+				int symbol = alphabet.normalize((char) b);
+				if (symbol >= 0) {
+					symbols[count++] = (byte) symbol;
+				}
+				position++;
+				continue;
+			}
+			b &= 0xFF;
+			// U+0400..U+047F: всё, что кодируется ведущими байтами 0xD0 и 0xD1
+			if (b == 0xD0 || b == 0xD1) {
+				if (position + 1 >= limit) break;
+				int b2 = continuation(src.get(position + 1));
+				int symbol = alphabet.normalize((char) (0x400 | ((b & 0x01) << 6) | b2));
+				if (symbol >= 0) {
+					symbols[count++] = (byte) symbol;
+				}
+				position += 2;
+			} else if (b >= 0xC2 && b <= 0xDF) {
+				if (position + 1 >= limit) break;
+				int c = ((b & 0x1F) << 6) | continuation(src.get(position + 1));
+				count = append(alphabet.normalize((char) c), symbols, count);
+				position += 2;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				if (position + 2 >= limit) break;
+				int b2 = src.get(position + 1) & 0xFF;
+				if ((b == 0xE0 && b2 < 0xA0) || (b == 0xED && b2 > 0x9F)) {
+					throw new MalformedInputException(1);
+				}
+				int c = ((b & 0x0F) << 12) | (continuation(b2) << 6) | continuation(src.get(position + 2));
+				count = append(alphabet.normalize((char) c), symbols, count);
+				position += 3;
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				// Символы вне BMP в алфавит не входят, только проверяем корректность
+				if (position + 3 >= limit) break;
+				int b2 = src.get(position + 1) & 0xFF;
+				if ((b == 0xF0 && b2 < 0x90) || (b == 0xF4 && b2 > 0x8F)) {
+					throw new MalformedInputException(1);
+				}
+				continuation(b2);
+				continuation(src.get(position + 2));
+				continuation(src.get(position + 3));
+				position += 4;
+			} else {
+				throw new MalformedInputException(1);
+			}
+		}
+		src.position(position);
+		return count;
+	}
+
+	private static int continuation(int b) throws MalformedInputException {
+		if ((b & 0xC0) != 0x80) {
+			throw new MalformedInputException(1);
+		}
+		return b & 0x3F;
+	}
+
+	private static int append(int symbol, byte[] symbols, int count) {
+		if (symbol >= 0) {
+			symbols[count++] = (byte) symbol;
+		}
+		return count;
+	}
+}
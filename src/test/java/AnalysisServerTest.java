@@ -0,0 +1,227 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Файлы в разных кодировках и архивах должны давать тот же результат, что и исходный текст
+public class AnalysisServerTest {
+	private static final String TEXT = "Съешь же ещё этих мягких французских булок, да выпей чаю.\n"
+			+ "В чащах юга жил бы цитрус? Да, но фальшивый экземпляр!\n";
+
+	private Path root;
+	private AnalysisServer server;
+	private TextAnalyser expected;
+
+	@Before
+	public void start() throws IOException {
+		root = Files.createTempDirectory("server-test");
+		server = new AnalysisServer(0, 2, 8, 1 << 20, root, 1 << 20);
+		server.start();
+		expected = new TextAnalyser(TEXT);
+	}
+
+	@After
+	public void stop() throws IOException {
+		server.close();
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public void analysesUtf8File() throws IOException {
+		assertAnalysed(write("utf8.txt", TEXT.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void analysesUtf8FileWithBom() throws IOException {
+		byte[] text = TEXT.getBytes(StandardCharsets.UTF_8);
+		byte[] bytes = new byte[text.length + 3];
+		bytes[0] = (byte) 0xEF;
+		bytes[1] = (byte) 0xBB;
+		bytes[2] = (byte) 0xBF;
+		System.arraycopy(text, 0, bytes, 3, text.length);
+		assertAnalysed(write("bom.txt", bytes));
+	}
+
+	@Test
+	public void analysesUtf16File() throws IOException {
+		assertAnalysed(write("utf16.txt", TEXT.getBytes(StandardCharsets.UTF_16)));
+	}
+
+	@Test
+	public void analysesCp1251File() throws IOException {
+		assertAnalysed(write("cp1251.txt", TEXT.getBytes(Charset.forName("windows-1251"))));
+	}
+
+	@Test
+	public void analysesKoi8File() throws IOException {
+		assertAnalysed(write("koi8.txt", TEXT.getBytes(Charset.forName("KOI8-R"))));
+	}
+
+	@Test
+	public void analysesGzipFile() throws IOException {
+		Path file = root.resolve("text.txt.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+		}
+		assertAnalysed("text.txt.gz");
+	}
+
+	@Test
+	public void analysesZipFile() throws IOException {
+		Path file = root.resolve("texts.zip");
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+			out.putNextEntry(new ZipEntry("text.txt"));
+			out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		assertAnalysed("texts.zip");
+	}
+
+	@Test
+	public void analysesGzipFileInCp1251() throws IOException {
+		Path file = root.resolve("cp1251.txt.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write(TEXT.getBytes(Charset.forName("windows-1251")));
+		}
+		assertAnalysed("cp1251.txt.gz");
+	}
+
+	@Test
+	public void analysesZipEntriesInDifferentEncodings() throws IOException {
+		Path file = root.resolve("mixed.zip");
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+			out.putNextEntry(new ZipEntry("koi8.txt"));
+			out.write(TEXT.getBytes(Charset.forName("KOI8-R")));
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("utf16.txt"));
+			out.write(TEXT.getBytes(StandardCharsets.UTF_16));
+			out.closeEntry();
+		}
+		TextAnalyser twice = new TextAnalyser(TEXT + TEXT);
+		String json = request("GET", "/analyse?path=mixed.zip", null);
+		assertEquals(twice.getLength(), (long) number(json, "length"));
+		assertEquals(twice.getMarkovEntropy(), number(json, "markov_entropy"), 1e-12);
+	}
+
+	@Test
+	public void pairsFilesInDifferentEncodings() throws IOException {
+		write("first.txt", TEXT.getBytes(Charset.forName("windows-1251")));
+		write("second.txt", TEXT.getBytes(Charset.forName("KOI8-R")));
+		String json = request("POST", "/pair", "firstPath=first.txt&secondPath=second.txt");
+		PairedTextAnalyser pair = new PairedTextAnalyser(TEXT, TEXT);
+		assertEquals(pair.getJointEntropy(), number(json, "joint_entropy"), 1e-12);
+		assertEquals(pair.getConditionalEntropy(), number(json, "conditional_entropy_ab"), 1e-12);
+	}
+
+	@Test
+	public void rejectsCompressedFileLargerThanLimitWhenDecompressed() throws IOException {
+		Path file = root.resolve("bomb.txt.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			byte[] line = TEXT.getBytes(StandardCharsets.UTF_8);
+			for (int written = 0; written <= 2 << 20; written += line.length) {
+				out.write(line);
+			}
+		}
+		assertTrue(Files.size(file) < 1 << 20);
+		assertEquals(413, connect("GET", "/analyse?path=bomb.txt.gz", null).getResponseCode());
+		write("small.txt", TEXT.getBytes(StandardCharsets.UTF_8));
+		assertEquals(413, connect("POST", "/pair", "firstPath=small.txt&secondPath=bomb.txt.gz").getResponseCode());
+	}
+
+	@Test
+	public void rejectsSymlinkOutsideRoot() throws IOException {
+		Path outside = Files.createTempFile("server-test", ".txt");
+		try {
+			Files.write(outside, TEXT.getBytes(StandardCharsets.UTF_8));
+			Files.createSymbolicLink(root.resolve("link.txt"), outside);
+			assertEquals("HTTP/1.1 403", status("GET /analyse?path=link.txt HTTP/1.1\r\n"));
+		} finally {
+			Files.delete(outside);
+		}
+	}
+
+	@Test
+	public void rejectsInvalidContentLength() throws IOException {
+		assertEquals("HTTP/1.1 400", status("POST /pair HTTP/1.1\r\nContent-Length: many\r\n"));
+		assertEquals("HTTP/1.1 400", status("POST /pair HTTP/1.1\r\nContent-Length: -5\r\n"));
+	}
+
+	private String write(String name, byte[] bytes) throws IOException {
+		Files.write(root.resolve(name), bytes);
+		return name;
+	}
+
+	private void assertAnalysed(String name) throws IOException {
+		String json = request("GET", "/analyse?path=" + URLEncoder.encode(name, StandardCharsets.UTF_8), null);
+		assertEquals(expected.getLength(), (long) number(json, "length"));
+		assertEquals(expected.getDefaultEntropy(), number(json, "default_entropy"), 1e-12);
+		assertEquals(expected.getMarkovEntropy(), number(json, "markov_entropy"), 1e-12);
+	}
+
+	private String request(String method, String path, String form) throws IOException {
+		HttpURLConnection connection = connect(method, path, form);
+		int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			assertEquals(body, 200, status);
+			return body;
+		}
+	}
+
+	private HttpURLConnection connect(String method, String path, String form) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.port() + path)
+				.openConnection();
+		connection.setRequestMethod(method);
+		if (form != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(form.getBytes(StandardCharsets.US_ASCII));
+			}
+		}
+		return connection;
+	}
+
+	// Запрос пишется в сокет как есть: HttpURLConnection не отправит неверный Content-Length
+	private String status(String head) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+			OutputStream out = socket.getOutputStream();
+			out.write((head + "Host: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+			return response.substring(0, response.indexOf(' ', response.indexOf(' ') + 1));
+		}
+	}
+
+	private static double number(String json, String field) {
+		Matcher matcher = Pattern.compile("\"" + field + "\":([-0-9.Ee]+)").matcher(json);
+		if (!matcher.find()) {
+			throw new AssertionError("No " + field + " in " + json);
+		}
+		return Double.parseDouble(matcher.group(1));
+	}
+}
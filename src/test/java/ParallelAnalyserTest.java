@@ -0,0 +1,75 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+// Части с маленьким порогом режут текст посреди многобайтовых последовательностей; после слияния
+// счётчики должны совпасть с последовательным анализом до бита
+public class ParallelAnalyserTest {
+	private static final String TEXT;
+
+	static {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			text.append("Съешь ещё этих мягких булок — € ").append(i).append(" quick brown fox 😀\n");
+		}
+		TEXT = text.toString();
+	}
+
+	private Path file;
+	private ParallelAnalyser parallel;
+	private TextAnalyser expected;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("parallel-test", ".txt");
+		Files.write(file, TEXT.getBytes(StandardCharsets.UTF_8));
+		parallel = new ParallelAnalyser(4, 7);
+		expected = new TextAnalyser(TEXT);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		parallel.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void fileMatchesSequentialAnalysis() throws IOException {
+		TextAnalyser actual = parallel.analyse(file, true);
+		assertSame(actual);
+		assertArrayEquals(expected.normalizedSymbols(), actual.normalizedSymbols());
+	}
+
+	@Test
+	public void stringMatchesSequentialAnalysis() {
+		TextAnalyser actual = parallel.analyse(TEXT, true);
+		assertSame(actual);
+		assertArrayEquals(expected.normalizedSymbols(), actual.normalizedSymbols());
+	}
+
+	@Test
+	public void smallStringHonoursRetainFlag() {
+		try (ParallelAnalyser single = new ParallelAnalyser(4, Long.MAX_VALUE)) {
+			TextAnalyser actual = single.analyse(TEXT, false);
+			assertSame(actual);
+			assertFalse(actual.retainsNormalized());
+		}
+	}
+
+	private void assertSame(TextAnalyser actual) {
+		assertEquals(expected.getLength(), actual.getLength());
+		assertEquals(expected.getAlphabet(), actual.getAlphabet());
+		assertEquals(expected.getBigram(), actual.getBigram());
+		assertEquals(expected.getDefaultEntropy(), actual.getDefaultEntropy(), 0);
+		assertEquals(expected.getMarkovEntropy(), actual.getMarkovEntropy(), 0);
+	}
+}
@@ -0,0 +1,47 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Даже узкий sketch с большим числом коллизий должен давать границы, между которыми лежит точная энтропия
+public class SketchAnalyserTest {
+	private Path file;
+
+	@Before
+	public void write() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			text.append("Съешь же ещё этих мягких французских булок, да выпей чаю. В чащах юга жил бы цитрус ")
+					.append(i).append('\n');
+		}
+		file = Files.createTempFile("sketch-test", ".txt");
+		Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@After
+	public void delete() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void narrowSketchBoundsContainExactEntropy() throws IOException {
+		boolean collided = false;
+		for (int order = 1; order <= 3; order++) {
+			double exact = MarkovAnalyser.from(file, order).getEntropy(order);
+			SketchAnalyser sketch = SketchAnalyser.from(file, order, 16, 2);
+			collided |= Math.abs(sketch.getEntropy() - exact) > 1e-9;
+			assertEquals(MarkovAnalyser.from(file, order).getLength(), sketch.getLength());
+			assertTrue(order + ": " + sketch.getLowerBound() + " > " + exact, sketch.getLowerBound() <= exact);
+			assertTrue(order + ": " + exact + " > " + sketch.getUpperBound(), exact <= sketch.getUpperBound());
+		}
+		// Иначе тест не проверяет границы при завышенных счётчиках
+		assertTrue(collided);
+	}
+}
@@ -0,0 +1,88 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Слияние снимков должно давать ровно анализ склеенного текста, а повреждённый снимок —
+// IOException, а не непроверяемое исключение из разбора
+public class SnapshotTest {
+	private static final String TEXT = "Съешь же ещё этих мягких французских булок, да выпей чаю.";
+
+	private Path file;
+	private byte[] bytes;
+
+	@Before
+	public void write() throws IOException {
+		file = Files.createTempFile("snapshot-test", ".snap");
+		Snapshot.of(new TextAnalyser(TEXT), "hash").write(file);
+		bytes = Files.readAllBytes(file);
+	}
+
+	@After
+	public void delete() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void mergeMatchesConcatenatedText() throws IOException {
+		String second = "В чащах юга жил бы цитрус? Да, но фальшивый экземпляр!";
+		Snapshot merged = Snapshot.read(file).merge(Snapshot.of(new TextAnalyser(second), "second"));
+		assertSameCounts(new TextAnalyser(TEXT + second), merged.toAnalyser());
+	}
+
+	@Test
+	public void mergeWithEmptyTextKeepsCounts() throws IOException {
+		Snapshot merged = Snapshot.read(file).merge(Snapshot.of(new TextAnalyser(""), "empty"));
+		assertSameCounts(new TextAnalyser(TEXT), merged.toAnalyser());
+	}
+
+	@Test
+	public void rejectsNegativeAlphabetSize() throws IOException {
+		bytes[6] = (byte) 0xFF;
+		assertCorrupted();
+	}
+
+	@Test
+	public void rejectsHashLongerThanFile() throws IOException {
+		int size = ByteBuffer.wrap(bytes, 6, 2).getShort();
+		int hashLength = 8 + 2 * size + 8 + 4 + 4 + 8 + 8;
+		bytes[hashLength] = (byte) 0xFF;
+		bytes[hashLength + 1] = (byte) 0xFF;
+		assertCorrupted();
+	}
+
+	@Test
+	public void rejectsBigramIndexOutsideTable() throws IOException {
+		int size = ByteBuffer.wrap(bytes, 6, 2).getShort();
+		int hashLength = 8 + 2 * size + 8 + 4 + 4 + 8 + 8;
+		int firstIndex = hashLength + 2 + ByteBuffer.wrap(bytes, hashLength, 2).getShort() + 8 * size + 4;
+		ByteBuffer.wrap(bytes).putInt(firstIndex, size * size);
+		assertCorrupted();
+	}
+
+	private static void assertSameCounts(TextAnalyser expected, TextAnalyser actual) {
+		assertEquals(expected.getLength(), actual.getLength());
+		assertEquals(expected.getAlphabet(), actual.getAlphabet());
+		assertEquals(expected.getBigram(), actual.getBigram());
+		assertEquals(expected.getDefaultEntropy(), actual.getDefaultEntropy(), 0);
+		assertEquals(expected.getMarkovEntropy(), actual.getMarkovEntropy(), 0);
+	}
+
+	private void assertCorrupted() throws IOException {
+		Files.write(file, bytes);
+		try {
+			Snapshot.read(file);
+			fail("Corrupted snapshot was read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupted snapshot"));
+		}
+	}
+}
@@ -0,0 +1,52 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+// Бенчмарки находят StageHooks по имени; тест ловит переименование в обычной сборке,
+// а не только при запуске профиля benchmark
+public class StageHooksTest {
+	private static final String TEXT = "Съешь же ещё этих мягких французских булок, да выпей чаю.";
+
+	@Test
+	public void hooksHaveSignaturesUsedByBenchmarks() throws ReflectiveOperationException {
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		lookup.findStatic(StageHooks.class, "normalize", MethodType.methodType(byte[].class, String.class));
+		lookup.findStatic(StageHooks.class, "count", MethodType.methodType(Object.class, byte[].class));
+		lookup.findStatic(StageHooks.class, "analyser",
+				MethodType.methodType(TextAnalyser.class, Object.class, byte[].class));
+		lookup.findStatic(StageHooks.class, "analyse", MethodType.methodType(TextAnalyser.class, String.class));
+		lookup.findStatic(StageHooks.class, "analyse", MethodType.methodType(TextAnalyser.class, Path.class));
+		lookup.findStatic(StageHooks.class, "letterMap", MethodType.methodType(Map.class, TextAnalyser.class));
+		lookup.findStatic(StageHooks.class, "bigramMap", MethodType.methodType(Map.class, TextAnalyser.class));
+		lookup.findStatic(StageHooks.class, "paired",
+				MethodType.methodType(PairedTextAnalyser.class, TextAnalyser.class, TextAnalyser.class));
+	}
+
+	@Test
+	public void stagesMatchFullAnalysis() throws IOException {
+		TextAnalyser expected = new TextAnalyser(TEXT);
+		byte[] symbols = StageHooks.normalize(TEXT);
+		TextAnalyser staged = StageHooks.analyser(StageHooks.count(symbols), symbols);
+		assertEquals(expected.getMarkovEntropy(), staged.getMarkovEntropy(), 0);
+		assertEquals(expected.getAlphabet(), StageHooks.letterMap(staged));
+		assertEquals(expected.getBigram(), StageHooks.bigramMap(staged));
+		assertEquals(expected.getMarkovEntropy(), StageHooks.analyse(TEXT).getMarkovEntropy(), 0);
+		Path file = Files.createTempFile("hooks-test", ".txt");
+		try {
+			Files.write(file, TEXT.getBytes(StandardCharsets.UTF_8));
+			assertEquals(expected.getMarkovEntropy(), StageHooks.analyse(file).getMarkovEntropy(), 0);
+		} finally {
+			Files.delete(file);
+		}
+		assertEquals(new PairedTextAnalyser(expected, expected).getJointEntropy(),
+				StageHooks.paired(staged, staged).getJointEntropy(), 0);
+	}
+}
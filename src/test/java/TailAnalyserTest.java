@@ -0,0 +1,71 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+// Дописывание порциями, в том числе посреди многобайтовой последовательности, должно давать
+// тот же результат, что и полный анализ уже записанного текста
+public class TailAnalyserTest {
+	private static final String TEXT = "Съешь же ещё этих мягких французских булок — € 😀, да выпей чаю.\n"
+			+ "В чащах юга жил бы цитрус? Да, но фальшивый экземпляр! The quick brown fox.\n";
+
+	private Path file;
+	private TailAnalyser tail;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("tail-test", ".txt");
+		tail = new TailAnalyser(file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		tail.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void chunkedAppendsMatchFullAnalysis() throws IOException {
+		byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+		for (int from = 0; from < bytes.length; from += 5) {
+			Files.write(file, Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + 5)),
+					StandardOpenOption.APPEND);
+			tail.refresh();
+			String written = complete(bytes, (int) tail.getOffset());
+			assertSame(new TextAnalyser(written), tail.current());
+		}
+		assertEquals(bytes.length, tail.getOffset());
+		assertFalse(tail.refresh());
+	}
+
+	@Test
+	public void restartsWhenFileShrinks() throws IOException {
+		Files.write(file, TEXT.getBytes(StandardCharsets.UTF_8));
+		tail.refresh();
+		Files.write(file, "Новый текст".getBytes(StandardCharsets.UTF_8));
+		tail.refresh();
+		assertSame(new TextAnalyser("Новый текст"), tail.current());
+	}
+
+	// Смещение всегда стоит на границе последовательности, так что префикс декодируется целиком
+	private static String complete(byte[] bytes, int length) {
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private static void assertSame(TextAnalyser expected, TextAnalyser actual) {
+		assertEquals(expected.getLength(), actual.getLength());
+		assertEquals(expected.getAlphabet(), actual.getAlphabet());
+		assertEquals(expected.getBigram(), actual.getBigram());
+		assertEquals(expected.getDefaultEntropy(), actual.getDefaultEntropy(), 0);
+		assertEquals(expected.getMarkovEntropy(), actual.getMarkovEntropy(), 0);
+	}
+}
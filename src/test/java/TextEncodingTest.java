@@ -0,0 +1,38 @@
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+// Регистр не должен влиять на выбор между CP1251 и KOI8-R
+public class TextEncodingTest {
+	private static final String UPPER = "ОЧЕНЬ ГРОМКИЙ ТЕКСТ ЗАГЛАВНЫМИ";
+	private static final String MIXED = "Глава первая\nВ которой всё начинается.";
+
+	@Test
+	public void detectsUppercaseText() {
+		assertDetected(TextEncoding.WINDOWS_1251, UPPER);
+		assertDetected(TextEncoding.KOI8_R, UPPER);
+	}
+
+	@Test
+	public void detectsLowercaseAndMixedText() {
+		for (String text : new String[]{UPPER.toLowerCase(), MIXED, MIXED.toUpperCase()}) {
+			assertDetected(TextEncoding.WINDOWS_1251, text);
+			assertDetected(TextEncoding.KOI8_R, text);
+		}
+	}
+
+	@Test
+	public void detectsUtf8() {
+		assertDetected(TextEncoding.UTF_8, UPPER);
+		byte[] bytes = UPPER.getBytes(StandardCharsets.UTF_8);
+		// Последовательность, оборванная концом префикса, не мешает
+		assertEquals(TextEncoding.UTF_8, TextEncoding.detect(bytes, bytes.length - 1));
+	}
+
+	private static void assertDetected(TextEncoding encoding, String text) {
+		byte[] bytes = text.getBytes(encoding.charset());
+		assertEquals(text, encoding, TextEncoding.detect(bytes, bytes.length));
+	}
+}